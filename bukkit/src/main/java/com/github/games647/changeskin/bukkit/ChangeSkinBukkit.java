@@ -8,22 +8,29 @@ import com.github.games647.changeskin.bukkit.command.SelectCommand;
 import com.github.games647.changeskin.bukkit.command.SetCommand;
 import com.github.games647.changeskin.bukkit.command.SkullCommand;
 import com.github.games647.changeskin.bukkit.command.UploadCommand;
+import com.github.games647.changeskin.bukkit.task.ApplyQueue;
+import com.github.games647.changeskin.bukkit.task.SkinApplier;
+import com.github.games647.changeskin.bukkit.task.ViewerRefresher;
 import com.github.games647.changeskin.core.ChangeSkinCore;
 import com.github.games647.changeskin.core.CommonUtil;
 import com.github.games647.changeskin.core.PlatformPlugin;
 import com.github.games647.changeskin.core.SkinStorage;
 import com.github.games647.changeskin.core.message.ChannelMessage;
+import com.github.games647.changeskin.core.message.ChannelProtocol;
 import com.github.games647.changeskin.core.message.NamespaceKey;
 import com.github.games647.changeskin.core.model.UserPreference;
-import com.google.common.io.ByteArrayDataOutput;
-import com.google.common.io.ByteStreams;
+import com.github.games647.changeskin.core.model.skin.SkinModel;
 
 import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentMap;
 
 import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.plugin.messaging.Messenger;
 import org.bukkit.plugin.messaging.PluginMessageRecipient;
@@ -33,6 +40,7 @@ import static com.github.games647.changeskin.core.message.CheckPermMessage.CHECK
 import static com.github.games647.changeskin.core.message.ForwardMessage.FORWARD_COMMAND_CHANNEL;
 import static com.github.games647.changeskin.core.message.PermResultMessage.PERMISSION_RESULT_CHANNEL;
 import static com.github.games647.changeskin.core.message.SkinUpdateMessage.UPDATE_SKIN_CHANNEL;
+import static java.util.stream.Collectors.toList;
 
 public class ChangeSkinBukkit extends JavaPlugin implements PlatformPlugin<CommandSender> {
 
@@ -42,6 +50,8 @@ public class ChangeSkinBukkit extends JavaPlugin implements PlatformPlugin<Comma
 
     private boolean bungeeCord;
     private final BukkitSkinAPI api = new BukkitSkinAPI(this);
+    private final ViewerRefresher viewerRefresher = new ViewerRefresher(this);
+    private ApplyQueue applyQueue;
 
     @Override
     public void onEnable() {
@@ -61,6 +71,9 @@ public class ChangeSkinBukkit extends JavaPlugin implements PlatformPlugin<Comma
             return;
         }
 
+        applyQueue = new ApplyQueue(this, core.getConfig().getInt("apply-budget"));
+        applyQueue.start();
+
         if (bungeeCord) {
             logger.info("BungeeCord detected. Activating BungeeCord support");
             logger.info("Make sure you installed the plugin on BungeeCord too");
@@ -79,6 +92,18 @@ public class ChangeSkinBukkit extends JavaPlugin implements PlatformPlugin<Comma
             messenger.registerIncomingPluginChannel(this, permissionChannel, new CheckPermissionListener(this));
         } else {
             getServer().getPluginManager().registerEvents(new LoginListener(this), this);
+            preloadOnlinePlayers();
+        }
+    }
+
+    private void preloadOnlinePlayers() {
+        //warm up the cache for players who are already online like after a reload
+        List<UUID> onlinePlayers = getServer().getOnlinePlayers().stream()
+                .map(Player::getUniqueId)
+                .collect(toList());
+        if (!onlinePlayers.isEmpty() && core.getStorage() != null) {
+            getServer().getScheduler().runTaskAsynchronously(this,
+                    () -> core.getStorage().getPreferences(onlinePlayers));
         }
     }
 
@@ -99,6 +124,14 @@ public class ChangeSkinBukkit extends JavaPlugin implements PlatformPlugin<Comma
         return core.getStorage();
     }
 
+    public ViewerRefresher getViewerRefresher() {
+        return viewerRefresher;
+    }
+
+    public ApplyQueue getApplyQueue() {
+        return applyQueue;
+    }
+
     public UserPreference getLoginSession(UUID id) {
         return loginSessions.get(id);
     }
@@ -125,6 +158,22 @@ public class ChangeSkinBukkit extends JavaPlugin implements PlatformPlugin<Comma
         return false;
     }
 
+    @Override
+    public Collection<UUID> getOnlinePlayers() {
+        //the player list is copied on write, so it can be read from other threads
+        return getServer().getOnlinePlayers().stream().map(Player::getUniqueId).collect(toList());
+    }
+
+    @Override
+    public void applySkin(UUID playerId, SkinModel targetSkin) {
+        getServer().getScheduler().runTask(this, () -> {
+            Player player = getServer().getPlayer(playerId);
+            if (player != null) {
+                applyQueue.enqueue(new SkinApplier(this, null, player, targetSkin, false));
+            }
+        });
+    }
+
     private void registerCommands() {
         Optional.ofNullable(getCommand("setskin")).ifPresent(c -> c.setExecutor(new SetCommand(this)));
         Optional.ofNullable(getCommand("skinupdate")).ifPresent(c -> c.setExecutor(new InvalidateCommand(this)));
@@ -139,11 +188,10 @@ public class ChangeSkinBukkit extends JavaPlugin implements PlatformPlugin<Comma
     }
 
     public void sendPluginMessage(PluginMessageRecipient sender, ChannelMessage message) {
-        ByteArrayDataOutput out = ByteStreams.newDataOutput();
-        message.writeTo(out);
-
         NamespaceKey channel = new NamespaceKey(getName(), message.getChannelName());
-        sender.sendPluginMessage(this, channel.getCombinedName(), out.toByteArray());
+        for (byte[] frame : ChannelProtocol.encode(Collections.singletonList(message))) {
+            sender.sendPluginMessage(this, channel.getCombinedName(), frame);
+        }
     }
 
     @Override
@@ -6,8 +6,8 @@ import com.github.games647.changeskin.core.shared.SharedListener;
 
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
-import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
@@ -37,6 +37,8 @@ public class LoginListener extends SharedListener implements Listener {
         UUID playerUuid = preLoginEvent.getUniqueId();
         String playerName = preLoginEvent.getName();
 
+        long deadline = getLoginDeadline();
+        CompletableFuture<Optional<UUID>> owner = prefetchOwner(playerUuid, playerName);
         UserPreference preferences = core.getStorage().getPreferences(playerUuid);
         if (preferences == null) {
             return;
@@ -54,11 +56,11 @@ public class LoginListener extends SharedListener implements Listener {
             preferences.setTargetSkin(targetSkin);
             save(preferences);
         } else if (core.getConfig().getBoolean("restoreSkins")) {
-            refetchSkin(playerName, preferences);
+            refetchSkin(playerName, owner, deadline, preferences);
         }
 
         if (!preferences.getTargetSkin().isPresent()) {
-            getRandomSkin().ifPresent(preferences::setTargetSkin);
+            plugin.startSession(playerUuid, withDefaultSkin(preferences));
         }
     }
 
@@ -79,18 +81,4 @@ public class LoginListener extends SharedListener implements Listener {
 
         plugin.endSession(player.getUniqueId());
     }
-
-    @Override
-    protected void save(UserPreference preferences) {
-        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
-            Optional<SkinModel> optSkin = preferences.getTargetSkin();
-            if (optSkin.isPresent()) {
-                if (plugin.getStorage().save(optSkin.get())) {
-                    plugin.getStorage().save(preferences);
-                }
-            } else {
-                plugin.getStorage().save(preferences);
-            }
-        });
-    }
 }
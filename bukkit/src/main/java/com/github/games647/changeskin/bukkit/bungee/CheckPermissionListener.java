@@ -1,17 +1,18 @@
 package com.github.games647.changeskin.bukkit.bungee;
 
 import com.github.games647.changeskin.bukkit.ChangeSkinBukkit;
+import com.github.games647.changeskin.core.message.ChannelProtocol;
 import com.github.games647.changeskin.core.message.CheckPermMessage;
 import com.github.games647.changeskin.core.message.PermResultMessage;
-import com.github.games647.changeskin.core.model.skin.SkinModel;
-import com.google.common.io.ByteArrayDataInput;
-import com.google.common.io.ByteStreams;
+import com.github.games647.changeskin.core.message.SkinReference;
 
 import java.util.UUID;
 
 import org.bukkit.entity.Player;
 import org.bukkit.plugin.messaging.PluginMessageListener;
 
+import static com.github.games647.changeskin.core.message.CheckPermMessage.TYPE_ID;
+
 public class CheckPermissionListener implements PluginMessageListener {
 
     private final ChangeSkinBukkit plugin;
@@ -22,13 +23,17 @@ public class CheckPermissionListener implements PluginMessageListener {
 
     @Override
     public void onPluginMessageReceived(String channel, Player player, byte[] data) {
-        ByteArrayDataInput dataInput = ByteStreams.newDataInput(data);
-        CheckPermMessage message = new CheckPermMessage();
-        message.readFrom(dataInput);
+        //malformed frames are empty
+        for (CheckPermMessage message : ChannelProtocol.decode(data, TYPE_ID, CheckPermMessage::new)) {
+            checkPermissions(player, message);
+        }
+    }
 
+    private void checkPermissions(Player player, CheckPermMessage message) {
         UUID receiverUUID = message.getReceiverUUD();
         boolean op = message.isOp();
-        SkinModel targetSkin = message.getTargetSkin();
+        //only the profile is needed here, so the skin is sent back without decoding it
+        SkinReference targetSkin = message.getTargetSkin();
         UUID skinProfile = targetSkin.getProfileId();
 
         boolean success = op || checkBungeePerms(player, receiverUUID, message.isSkinPerm(), skinProfile);
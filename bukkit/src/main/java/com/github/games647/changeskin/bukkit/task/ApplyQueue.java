@@ -0,0 +1,156 @@
+package com.github.games647.changeskin.bukkit.task;
+
+import com.github.games647.changeskin.bukkit.ChangeSkinBukkit;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.Bukkit;
+
+/**
+ * Applies skins on the main thread within a time budget per tick. Pending changes of the same player are merged, so
+ * only the latest one is saved and applied. The invokers of the replaced changes still get their cooldown and
+ * feedback. Changes that don't fit into the budget are spread over the next ticks.
+ */
+public class ApplyQueue implements Runnable {
+
+    //weight of the newest latency in the average
+    private static final double LATENCY_ALPHA = 0.2;
+
+    private final ChangeSkinBukkit plugin;
+    private final long budgetNanos;
+
+    //keeps the position of the first change of a player - guarded by itself
+    private final Map<UUID, PendingApply> pending = new LinkedHashMap<>();
+
+    private volatile double averageLatency;
+    private volatile long maxLatency;
+
+    public ApplyQueue(ChangeSkinBukkit plugin, long budgetMicros) {
+        this.plugin = plugin;
+        this.budgetNanos = TimeUnit.MICROSECONDS.toNanos(budgetMicros);
+    }
+
+    public void start() {
+        Bukkit.getScheduler().runTaskTimer(plugin, this, 1, 1);
+    }
+
+    /**
+     * @param applier change that replaces the pending change of the same player
+     */
+    public void enqueue(SkinApplier applier) {
+        UUID receiver = applier.getReceiver().getUniqueId();
+        synchronized (pending) {
+            PendingApply previous = pending.get(receiver);
+            if (previous == null) {
+                pending.put(receiver, new PendingApply(applier, System.nanoTime()));
+            } else {
+                previous.superseded.add(previous.applier);
+                previous.applier = applier;
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        long start = System.nanoTime();
+
+        int applied = 0;
+        PendingApply next;
+        while ((next = poll()) != null) {
+            apply(next);
+            applied++;
+
+            //checked after applying, so at least one change is applied every tick and the queue makes progress
+            long now = System.nanoTime();
+            onApplied(now - next.queued);
+            if (now - start >= budgetNanos) {
+                break;
+            }
+        }
+
+        int remaining = getQueueDepth();
+        if (remaining > 0) {
+            plugin.getLog().debug("Applied {} skins in {}µs. {} skins are delayed to the next tick", applied,
+                    TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start), remaining);
+        }
+    }
+
+    /**
+     * @return number of players waiting for their skin
+     */
+    public int getQueueDepth() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * @return moving average of the milliseconds between queueing and applying a skin
+     */
+    public double getAverageLatency() {
+        return averageLatency;
+    }
+
+    /**
+     * @return the longest time in milliseconds a skin was waiting
+     */
+    public long getMaxLatency() {
+        return maxLatency;
+    }
+
+    private void apply(PendingApply pendingApply) {
+        //a failing change must not stop the other changes of this tick
+        try {
+            pendingApply.applier.run();
+        } catch (RuntimeException ex) {
+            plugin.getLog().error("Failed to apply skin for {}", pendingApply.applier.getReceiver(), ex);
+        }
+
+        for (SkinApplier superseded : pendingApply.superseded) {
+            try {
+                superseded.runSuperseded();
+            } catch (RuntimeException ex) {
+                plugin.getLog().error("Failed to notify a replaced skin change of {}", superseded.getReceiver(), ex);
+            }
+        }
+    }
+
+    private PendingApply poll() {
+        synchronized (pending) {
+            Iterator<PendingApply> iterator = pending.values().iterator();
+            if (!iterator.hasNext()) {
+                return null;
+            }
+
+            PendingApply next = iterator.next();
+            iterator.remove();
+            return next;
+        }
+    }
+
+    private void onApplied(long latencyNanos) {
+        //only written from the main thread
+        double latency = latencyNanos / 1_000_000.0;
+        averageLatency = averageLatency == 0 ? latency : averageLatency + LATENCY_ALPHA * (latency - averageLatency);
+        maxLatency = Math.max(maxLatency, TimeUnit.NANOSECONDS.toMillis(latencyNanos));
+    }
+
+    private static class PendingApply {
+
+        //guarded by the pending map until it's polled
+        private SkinApplier applier;
+        private final List<SkinApplier> superseded = new ArrayList<>(0);
+        private final long queued;
+
+        PendingApply(SkinApplier applier, long queued) {
+            this.applier = applier;
+            this.queued = queued;
+        }
+    }
+}
@@ -21,14 +21,18 @@ import com.github.games647.changeskin.bukkit.ChangeSkinBukkit;
 import com.github.games647.changeskin.core.model.UserPreference;
 import com.github.games647.changeskin.core.model.skin.SkinModel;
 import com.github.games647.changeskin.core.shared.task.SharedApplier;
+import com.google.common.collect.MapMaker;
 import com.google.common.hash.Hashing;
 import com.nametagedit.plugin.NametagEdit;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -52,15 +56,29 @@ public class SkinApplier extends SharedApplier {
 
     private static final boolean NEW_HIDE_METHOD_AVAILABLE;
 
-    // static final methods are faster, because JVM can inline them and make them accessible
-    private static final Method DEBUG_WORLD_METHOD;
-
-    private static final Method PLAYER_HANDLE_METHOD;
-    private static final Field INTERACTION_MANAGER;
-    private static final Field GAMEMODE_FIELD;
+    //the server version doesn't change at runtime
+    private static final boolean DIMENSION_TYPES =
+            MinecraftVersion.getCurrentVersion().compareTo(MinecraftVersion.AQUATIC_UPDATE) > 0;
+    private static final boolean HASHED_SEED = isAtOrAbove("1.15");
+    private static final boolean WORLD_KEYS = isAtOrAbove("1.16");
+    private static final boolean DIMENSION_HOLDER = isAtOrAbove("1.18.2");
+    private static final boolean PROFILE_KEYS = isAtOrAbove("1.19");
+
+    // MethodHandles are only clearly faster with invokeExact, so they are adapted to types known at compile time.
+    // The nested NMS calls are combined into a single handle, which the JVM can inline
+    // (World) -> boolean
+    private static final MethodHandle DEBUG_WORLD_HANDLE;
+    // (Player) -> Object (NMS gamemode)
+    private static final MethodHandle PREVIOUS_GAMEMODE_HANDLE;
+    // (Player) -> void
+    private static final MethodHandle UPDATE_HEALTH_HANDLE;
 
     private static final boolean DISABLED_PACKETS;
 
+    //respawn packets without the player specific fields - worlds don't change their dimension, seed or type
+    private static final Map<World, PacketContainer> RESPAWN_TEMPLATES = new MapMaker().weakKeys().makeMap();
+    private static final PacketContainer TELEPORT_TEMPLATE = createTeleportTemplate();
+
     static {
         boolean methodAvailable;
         try {
@@ -71,28 +89,29 @@ public class SkinApplier extends SharedApplier {
         }
 
         boolean localDisable = false;
-        Method localDebugWorld = null;
+        MethodHandle localDebugWorld = null;
+        MethodHandle localPreviousGamemode = null;
+        MethodHandle localUpdateHealth = null;
 
-        Method localHandleMethod = null;
-        Field localInteractionField = null;
-        Field localGamemode = null;
-
-        // use standard reflection if possible, MethodHandles are only clearly faster with invokeExact
-        // we can use for a nested call of debug world: getDebugField(getNMSWorldFromBukkit) in a single call
-        // But for the resourceKey the return type is not known at compile time - it's an NMS class
         Logger logger = JavaPlugin.getPlugin(ChangeSkinBukkit.class).getLog();
-        if (isAtOrAbove("1.16")) {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        if (WORLD_KEYS) {
             try {
                 Class<?> nmsWorldClass = MinecraftReflection.getNmsWorldClass();
 
                 // in comparison to the field values is this not obfuscated in 1.16 and 1.17
+                Method debugWorldMethod;
                 if (isAtOrAbove("1.18")) {
-                    localDebugWorld = nmsWorldClass.getDeclaredMethod("ad");
+                    debugWorldMethod = nmsWorldClass.getDeclaredMethod("ad");
                 } else {
-                    localDebugWorld = nmsWorldClass.getDeclaredMethod("isDebugWorld");
+                    debugWorldMethod = nmsWorldClass.getDeclaredMethod("isDebugWorld");
                 }
 
-                localHandleMethod = MinecraftReflection.getCraftPlayerClass().getDeclaredMethod("getHandle");
+                Method worldHandleMethod = MinecraftReflection.getCraftWorldClass().getDeclaredMethod("getHandle");
+                localDebugWorld = chain(lookup.unreflect(worldHandleMethod), lookup.unreflect(debugWorldMethod))
+                        .asType(MethodType.methodType(boolean.class, World.class));
+
+                Method handleMethod = MinecraftReflection.getCraftPlayerClass().getDeclaredMethod("getHandle");
 
                 String INTERACTION_CLASS = "PlayerInteractManager";
                 Class<?> interactionManager = MinecraftReflection.getMinecraftClass(
@@ -100,27 +119,47 @@ public class SkinApplier extends SharedApplier {
                 );
 
                 Class<?> entityPlayerClass = MinecraftReflection.getEntityPlayerClass();
-                localInteractionField = FuzzyReflection.fromClass(entityPlayerClass)
+                Field interactionField = FuzzyReflection.fromClass(entityPlayerClass)
                         .getFieldByType("playerInteractManager", interactionManager);
-                localInteractionField.setAccessible(true);
+                interactionField.setAccessible(true);
 
-                localGamemode = getPreviousGamemodeField(interactionManager);
-                localGamemode.setAccessible(true);
-            } catch (NoSuchFieldException | NoSuchMethodException reflectiveEx) {
+                Field gamemodeField = getPreviousGamemodeField(interactionManager);
+                gamemodeField.setAccessible(true);
+
+                MethodHandle interactionGetter = chain(lookup.unreflect(handleMethod),
+                        lookup.unreflectGetter(interactionField));
+                localPreviousGamemode = chain(interactionGetter, lookup.unreflectGetter(gamemodeField))
+                        .asType(MethodType.methodType(Object.class, Player.class));
+            } catch (ReflectiveOperationException reflectiveEx) {
                 logger.warn("Cannot find packet fields", reflectiveEx);
                 localDisable = true;
             }
         }
 
+        try {
+            Method updateHealth = MinecraftReflection.getCraftPlayerClass().getDeclaredMethod("updateScaledHealth");
+            localUpdateHealth = lookup.unreflect(updateHealth)
+                    .asType(MethodType.methodType(void.class, Player.class));
+        } catch (ReflectiveOperationException reflectiveEx) {
+            logger.warn("Cannot find updateScaledHealth for attributes", reflectiveEx);
+        }
+
         NEW_HIDE_METHOD_AVAILABLE = methodAvailable;
 
-        DEBUG_WORLD_METHOD = localDebugWorld;
-        PLAYER_HANDLE_METHOD = localHandleMethod;
-        INTERACTION_MANAGER = localInteractionField;
-        GAMEMODE_FIELD = localGamemode;
+        DEBUG_WORLD_HANDLE = localDebugWorld;
+        PREVIOUS_GAMEMODE_HANDLE = localPreviousGamemode;
+        UPDATE_HEALTH_HANDLE = localUpdateHealth;
         DISABLED_PACKETS = localDisable;
     }
 
+    /**
+     * @return handle that calls the getter on the result of the target
+     */
+    private static MethodHandle chain(MethodHandle target, MethodHandle getter) {
+        MethodType getterType = getter.type().changeParameterType(0, target.type().returnType());
+        return MethodHandles.filterReturnValue(target, getter.asType(getterType));
+    }
+
     private static Field getPreviousGamemodeField(Class<?> interactionManager) throws NoSuchFieldException {
         List<Field> gamemodes = FuzzyReflection.fromClass(interactionManager, true)
                 .getFieldListByType(EnumWrappers.getGameModeClass());
@@ -155,18 +194,50 @@ public class SkinApplier extends SharedApplier {
             return;
         }
 
+        trackCooldown();
+        if (plugin.getStorage() != null) {
+            UserPreference preferences = plugin.getStorage().getPreferences(receiver.getUniqueId());
+            save(preferences);
+        }
+
+        applySkin();
+    }
+
+    /**
+     * Runs only the invoker related parts for a change that was replaced by a newer change of the same receiver.
+     * The newer change saves and applies the skin.
+     */
+    public void runSuperseded() {
+        if (!isConnected()) {
+            return;
+        }
+
+        trackCooldown();
+        if (core.getConfig().getBoolean("instantSkinChange")) {
+            sendFeedback();
+        } else {
+            sendMessage("skin-changed-no-instant");
+        }
+    }
+
+    private void trackCooldown() {
         //uuid was successfully resolved, we could now make a cooldown check
         if (invoker instanceof Player && core != null) {
             UUID uniqueId = ((Player) invoker).getUniqueId();
             core.getCooldownService().trackPlayer(uniqueId);
         }
+    }
 
-        if (plugin.getStorage() != null) {
-            UserPreference preferences = plugin.getStorage().getPreferences(receiver.getUniqueId());
-            save(preferences);
+    private void sendFeedback() {
+        if (receiver.equals(invoker)) {
+            plugin.sendMessage(receiver, "skin-changed");
+        } else {
+            plugin.sendMessage(invoker, "skin-updated");
         }
+    }
 
-        applySkin();
+    public Player getReceiver() {
+        return receiver;
     }
 
     @Override
@@ -178,17 +249,14 @@ public class SkinApplier extends SharedApplier {
     protected void applyInstantUpdate() {
         plugin.getApi().applySkin(receiver, targetSkin);
 
-        if (!DISABLED_PACKETS) {
-            sendUpdateSelf(WrappedGameProfile.fromPlayer(receiver));
+        //shared by the receiver and all viewers
+        PacketContainer[] infoPackets = createInfoPackets(WrappedGameProfile.fromPlayer(receiver));
+        if (!DISABLED_PACKETS && infoPackets != null) {
+            sendUpdateSelf(infoPackets);
         }
 
-        sendUpdateOthers();
-
-        if (receiver.equals(invoker)) {
-            plugin.sendMessage(receiver, "skin-changed");
-        } else {
-            plugin.sendMessage(invoker, "skin-updated");
-        }
+        sendUpdateOthers(infoPackets);
+        sendFeedback();
     }
 
     @Override
@@ -196,17 +264,15 @@ public class SkinApplier extends SharedApplier {
         plugin.sendMessage(invoker, key);
     }
 
-    @Override
-    protected void runAsync(Runnable runnable) {
-        Bukkit.getScheduler().runTaskAsynchronously(plugin, runnable);
-    }
-
-    private void sendUpdateOthers() throws FieldAccessException {
+    private void sendUpdateOthers(PacketContainer[] infoPackets) throws FieldAccessException {
         //triggers an update for others player to see the new skin
-        Bukkit.getOnlinePlayers().stream()
-                .filter(onlinePlayer -> !onlinePlayer.equals(receiver))
-                .filter(onlinePlayer -> onlinePlayer.canSee(receiver))
-                .forEach(this::hideAndShow);
+        ViewerRefresher refresher = plugin.getViewerRefresher();
+        if (infoPackets == null || !refresher.refresh(receiver, infoPackets[0], infoPackets[1])) {
+            Bukkit.getOnlinePlayers().stream()
+                    .filter(onlinePlayer -> !onlinePlayer.equals(receiver))
+                    .filter(onlinePlayer -> onlinePlayer.canSee(receiver))
+                    .forEach(this::hideAndShow);
+        }
 
         //tell NameTagEdit to refresh the scoreboard
         if (Bukkit.getPluginManager().isPluginEnabled("NametagEdit")) {
@@ -214,10 +280,10 @@ public class SkinApplier extends SharedApplier {
         }
     }
 
-    private void sendUpdateSelf(WrappedGameProfile gameProfile) throws FieldAccessException {
+    private void sendUpdateSelf(PacketContainer[] infoPackets) throws FieldAccessException {
         Optional.ofNullable(receiver.getVehicle()).ifPresent(Entity::eject);
 
-        sendPacketsSelf(gameProfile);
+        sendPacketsSelf(infoPackets[0], infoPackets[1]);
 
         //trigger update exp
         receiver.setExp(receiver.getExp());
@@ -232,18 +298,20 @@ public class SkinApplier extends SharedApplier {
         inventory.setHeldItemSlot(inventory.getHeldItemSlot());
 
         //trigger update attributes like health modifier for generic.maxHealth
-        try {
-            receiver.getClass().getDeclaredMethod("updateScaledHealth").invoke(receiver);
-        } catch (ReflectiveOperationException reflectiveEx) {
-            plugin.getLog().error("Failed to invoke updateScaledHealth for attributes", reflectiveEx);
+        if (UPDATE_HEALTH_HANDLE != null) {
+            try {
+                UPDATE_HEALTH_HANDLE.invokeExact(receiver);
+            } catch (Exception ex) {
+                plugin.getLog().error("Failed to invoke updateScaledHealth for attributes", ex);
+            } catch (Throwable throwable) {
+                throw (Error) throwable;
+            }
         }
     }
 
-    private void sendPacketsSelf(WrappedGameProfile gameProfile) {
+    private PacketContainer[] createInfoPackets(WrappedGameProfile gameProfile) {
         PacketContainer removeInfo;
         PacketContainer addInfo;
-        PacketContainer respawn;
-        PacketContainer teleport;
 
         try {
             NativeGameMode gamemode = NativeGameMode.fromBukkit(receiver.getGameMode());
@@ -258,7 +326,7 @@ public class SkinApplier extends SharedApplier {
 
             //add info containing the skin data
             addInfo = removeInfo.deepClone();
-            if (MinecraftVersion.atOrAbove(new MinecraftVersion(1, 19, 0))) {
+            if (PROFILE_KEYS) {
                 WrappedProfilePublicKey profileKey = WrappedProfilePublicKey.ofPlayer(receiver);
                 playerInfoData = new PlayerInfoData(gameProfile, 0, gamemode, displayName, profileKey.getKeyData());
 
@@ -267,6 +335,20 @@ public class SkinApplier extends SharedApplier {
             }
 
             addInfo.getPlayerInfoAction().write(0, PlayerInfoAction.ADD_PLAYER);
+        } catch (FieldAccessException | IllegalArgumentException ex) {
+            plugin.getLog().error("Error occurred preparing player info packets", ex);
+            return null;
+        }
+
+        return new PacketContainer[]{removeInfo, addInfo};
+    }
+
+    private void sendPacketsSelf(PacketContainer removeInfo, PacketContainer addInfo) {
+        PacketContainer respawn;
+        PacketContainer teleport;
+
+        try {
+            NativeGameMode gamemode = NativeGameMode.fromBukkit(receiver.getGameMode());
 
             // Respawn packet - notify the client that it should update the own skin
             respawn = createRespawnPacket(gamemode);
@@ -301,20 +383,44 @@ public class SkinApplier extends SharedApplier {
     }
 
     private PacketContainer createRespawnPacket(NativeGameMode gamemode) throws ReflectiveOperationException {
-        PacketContainer respawn = new PacketContainer(RESPAWN);
-
         World world = receiver.getWorld();
+        PacketContainer template = RESPAWN_TEMPLATES.get(world);
+        if (template == null) {
+            template = createRespawnTemplate(world);
+            RESPAWN_TEMPLATES.put(world, template);
+        }
+
+        //the template is never sent, so copying the field references is enough
+        PacketContainer respawn = template.shallowClone();
+
+        // 1.14 dropped difficulty
         Difficulty difficulty = EnumWrappers.getDifficultyConverter().getSpecific(world.getDifficulty());
+        respawn.getDifficulties().writeSafely(0, difficulty);
+
+        // d = gamemode, e = gamemode (previous)
+        respawn.getGameModes().write(0, gamemode);
+        if (WORLD_KEYS) {
+            NativeGameMode previousGamemode = getPreviousGamemode(receiver);
+            if (previousGamemode != null) {
+                respawn.getGameModes().write(1, previousGamemode);
+            }
+        }
+
+        return respawn;
+    }
+
+    private PacketContainer createRespawnTemplate(World world) throws ReflectiveOperationException {
+        PacketContainer respawn = new PacketContainer(RESPAWN);
 
         //<= 1.13.1
         int dimensionId = world.getEnvironment().getId();
         respawn.getIntegers().writeSafely(0, dimensionId);
 
         //> 1.13.1
-        if (MinecraftVersion.getCurrentVersion().compareTo(MinecraftVersion.AQUATIC_UPDATE) > 0) {
+        if (DIMENSION_TYPES) {
             try {
                 respawn.getDimensionTypes().writeSafely(0, world);
-                if (isAtOrAbove("1.18.2")) {
+                if (DIMENSION_HOLDER) {
                     Object dimensionTypeHolder = getDimensionType(world);
                     respawn.getModifier().write(0, dimensionTypeHolder);
                 }
@@ -326,33 +432,22 @@ public class SkinApplier extends SharedApplier {
             }
         }
 
-        // 1.14 dropped difficulty and 1.15 added hashed seed
-        respawn.getDifficulties().writeSafely(0, difficulty);
-        if (isAtOrAbove("1.15")) {
+        // 1.15 added hashed seed
+        if (HASHED_SEED) {
             long seed = world.getSeed();
             respawn.getLongs().write(0, Hashing.sha256().hashLong(seed).asLong());
         }
 
-        if (isAtOrAbove("1.16")) {
+        if (WORLD_KEYS) {
             // a = dimension (as resource key) -> dim type, b = world (resource key) -> world name, c = "hashed" seed
             // dimension and seed covered above - we have to start with 1 because dimensions already uses the first idx
 
             // 1.16.2 dropped the first resourcekey usage
             respawn.getWorldKeys().write(0, world);
 
-            // d = gamemode, e = gamemode (previous)
-            respawn.getGameModes().write(0, gamemode);
-
-            NativeGameMode previousGamemode = getPreviousGamemode(receiver);
-            if (previousGamemode != null) {
-                respawn.getGameModes().write(1, previousGamemode);
-            }
-
             // f = debug world, g = flat world, h = flag (copy metadata)
-            // get the NMS world
             try {
-                Object nmsWorld = BukkitConverters.getWorldConverter().getGeneric(world);
-                respawn.getBooleans().write(0, (boolean) DEBUG_WORLD_METHOD.invoke(nmsWorld));
+                respawn.getBooleans().write(0, (boolean) DEBUG_WORLD_HANDLE.invokeExact(world));
             } catch (Exception ex) {
                 plugin.getLog().error("Cannot fetch debug state of world {}. Assuming false", world);
                 respawn.getBooleans().write(0, false);
@@ -366,10 +461,9 @@ public class SkinApplier extends SharedApplier {
         } else {
             // world type field replaced with a boolean
             respawn.getWorldTypeModifier().write(0, world.getWorldType());
-            respawn.getGameModes().write(0, gamemode);
         }
 
-        if (isAtOrAbove("1.19")) {
+        if (PROFILE_KEYS) {
             // set last death location
             respawn.getOptionals(Converters.passthrough(Object.class)).write(0, Optional.empty());
         }
@@ -381,34 +475,39 @@ public class SkinApplier extends SharedApplier {
         return MinecraftVersion.getCurrentVersion().compareTo(new MinecraftVersion(s)) >= 0;
     }
 
-    private PacketContainer createTeleportPacket(Location location) {
+    private static PacketContainer createTeleportTemplate() {
         PacketContainer teleport = new PacketContainer(POSITION);
         teleport.getModifier().writeDefaults();
 
+        //send an invalid teleport id in order to let Bukkit ignore the incoming confirm packet
+        teleport.getIntegers().writeSafely(0, -1337);
+        return teleport;
+    }
+
+    private PacketContainer createTeleportPacket(Location location) {
+        PacketContainer teleport = TELEPORT_TEMPLATE.shallowClone();
+
         teleport.getDoubles().write(0, location.getX())
                 .write(1, location.getY())
                 .write(2, location.getZ());
 
         teleport.getFloat().write(0, location.getYaw())
                 .write(1, location.getPitch());
-
-        //send an invalid teleport id in order to let Bukkit ignore the incoming confirm packet
-        teleport.getIntegers().writeSafely(0, -1337);
         return teleport;
     }
 
     private NativeGameMode getPreviousGamemode(Player receiver) {
         try {
-            Object nmsPlayer = PLAYER_HANDLE_METHOD.invoke(receiver);
-            Object interactionManager = INTERACTION_MANAGER.get(nmsPlayer);
-            Enum<?> gamemode = (Enum<?>) GAMEMODE_FIELD.get(interactionManager);
+            Object gamemode = PREVIOUS_GAMEMODE_HANDLE.invokeExact(receiver);
             if (gamemode == null) {
                 return null;
             }
 
-            return NativeGameMode.valueOf(gamemode.name());
-        } catch (IllegalAccessException | InvocationTargetException e) {
-            plugin.getLog().error("Failed to fetch previous gamemode of player {}", receiver, e);
+            return NativeGameMode.valueOf(((Enum<?>) gamemode).name());
+        } catch (Exception ex) {
+            plugin.getLog().error("Failed to fetch previous gamemode of player {}", receiver, ex);
+        } catch (Throwable throwable) {
+            throw (Error) throwable;
         }
 
         return NativeGameMode.fromBukkit(receiver.getGameMode());
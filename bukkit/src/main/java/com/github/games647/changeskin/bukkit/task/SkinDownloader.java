@@ -6,7 +6,6 @@ import com.github.games647.changeskin.core.shared.task.SharedDownloader;
 
 import java.util.UUID;
 
-import org.bukkit.Bukkit;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 
@@ -27,7 +26,7 @@ public class SkinDownloader extends SharedDownloader {
 
     @Override
     protected void scheduleApplyTask(SkinModel skinData) {
-        Bukkit.getScheduler().runTask(plugin, new SkinApplier(plugin, invoker, receiver, skinData, keepSkin));
+        plugin.getApplyQueue().enqueue(new SkinApplier(plugin, invoker, receiver, skinData, keepSkin));
     }
 
     @Override
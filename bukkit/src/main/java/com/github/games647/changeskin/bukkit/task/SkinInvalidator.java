@@ -4,7 +4,6 @@ import com.github.games647.changeskin.bukkit.ChangeSkinBukkit;
 import com.github.games647.changeskin.core.model.skin.SkinModel;
 import com.github.games647.changeskin.core.shared.task.SharedInvalidator;
 
-import org.bukkit.Bukkit;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 
@@ -29,6 +28,6 @@ public class SkinInvalidator extends SharedInvalidator {
 
     @Override
     protected void scheduleApplyTask(SkinModel skinData) {
-        Bukkit.getScheduler().runTask(plugin, new SkinApplier(plugin, invoker, receiver, skinData, false));
+        plugin.getApplyQueue().enqueue(new SkinApplier(plugin, invoker, receiver, skinData, false));
     }
 }
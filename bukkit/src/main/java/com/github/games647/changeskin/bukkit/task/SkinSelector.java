@@ -4,7 +4,6 @@ import com.github.games647.changeskin.bukkit.ChangeSkinBukkit;
 import com.github.games647.changeskin.core.model.skin.SkinModel;
 import com.github.games647.changeskin.core.shared.task.SharedSkinSelect;
 
-import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 
 public class SkinSelector extends SharedSkinSelect {
@@ -21,7 +20,7 @@ public class SkinSelector extends SharedSkinSelect {
 
     @Override
     protected void scheduleApplyTask(SkinModel targetSkin) {
-        Bukkit.getScheduler().runTask(plugin, new SkinApplier(plugin, receiver, receiver, targetSkin, true));
+        plugin.getApplyQueue().enqueue(new SkinApplier(plugin, receiver, receiver, targetSkin, true));
     }
 
     @Override
@@ -0,0 +1,118 @@
+package com.github.games647.changeskin.bukkit.task;
+
+import com.comphenix.protocol.ProtocolLibrary;
+import com.comphenix.protocol.ProtocolManager;
+import com.comphenix.protocol.events.PacketContainer;
+import com.comphenix.protocol.reflect.FieldAccessException;
+import com.github.games647.changeskin.bukkit.ChangeSkinBukkit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+
+/**
+ * Shows the new skin of a player to the other players. The player info packets are created once and shared by all
+ * viewers. Only players that are tracking the entity get it respawned, instead of hiding and showing the player for
+ * everyone online. Must be called from the main thread.
+ */
+public class ViewerRefresher {
+
+    private final ChangeSkinBukkit plugin;
+
+    //cost of the current tick
+    private long tickNanos;
+    private int tickRefreshes;
+    private int tickViewers;
+    private int tickTrackers;
+    private boolean flushScheduled;
+
+    private long lastTickNanos;
+    private long maxTickNanos;
+
+    public ViewerRefresher(ChangeSkinBukkit plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * @param receiver player with the new skin
+     * @param removeInfo player info packet removing the old profile
+     * @param addInfo player info packet adding the new profile
+     * @return false if the refresh failed
+     */
+    public boolean refresh(Player receiver, PacketContainer removeInfo, PacketContainer addInfo) {
+        long start = System.nanoTime();
+
+        //the tab list entry is visible across worlds
+        List<Player> viewers = new ArrayList<>();
+        for (Player onlinePlayer : Bukkit.getOnlinePlayers()) {
+            if (!onlinePlayer.equals(receiver) && onlinePlayer.canSee(receiver)) {
+                viewers.add(onlinePlayer);
+            }
+        }
+
+        ProtocolManager protocolManager = ProtocolLibrary.getProtocolManager();
+        List<Player> trackers;
+        try {
+            for (Player viewer : viewers) {
+                protocolManager.sendServerPacket(viewer, removeInfo);
+                protocolManager.sendServerPacket(viewer, addInfo);
+            }
+
+            //destroys and spawns the entity again only for players that are near enough to see it
+            trackers = protocolManager.getEntityTrackers(receiver);
+            if (!trackers.isEmpty()) {
+                protocolManager.updateEntity(receiver, trackers);
+            }
+        } catch (FieldAccessException | IllegalArgumentException ex) {
+            plugin.getLog().error("Failed to refresh the skin of {} for other players", receiver, ex);
+            return false;
+        }
+
+        record(System.nanoTime() - start, viewers.size(), trackers.size());
+        return true;
+    }
+
+    /**
+     * @return nanoseconds spent on refreshes in the last tick with refreshes
+     */
+    public long getLastTickNanos() {
+        return lastTickNanos;
+    }
+
+    /**
+     * @return the highest number of nanoseconds spent on refreshes in a single tick
+     */
+    public long getMaxTickNanos() {
+        return maxTickNanos;
+    }
+
+    private void record(long nanos, int viewers, int trackers) {
+        tickNanos += nanos;
+        tickRefreshes++;
+        tickViewers += viewers;
+        tickTrackers += trackers;
+
+        if (!flushScheduled) {
+            //runs at the start of the next tick, so it includes every refresh of this tick
+            flushScheduled = true;
+            Bukkit.getScheduler().runTask(plugin, this::flushTick);
+        }
+    }
+
+    private void flushTick() {
+        lastTickNanos = tickNanos;
+        maxTickNanos = Math.max(maxTickNanos, tickNanos);
+
+        plugin.getLog().debug("Refreshed {} skins for {} viewers with {} respawns in {}µs", tickRefreshes,
+                tickViewers, tickTrackers, TimeUnit.NANOSECONDS.toMicros(tickNanos));
+
+        tickNanos = 0;
+        tickRefreshes = 0;
+        tickViewers = 0;
+        tickTrackers = 0;
+        flushScheduled = false;
+    }
+}
@@ -1,6 +1,7 @@
 package com.github.games647.changeskin.bungee;
 
 import com.github.games647.changeskin.bungee.task.SkinApplier;
+import com.github.games647.changeskin.core.RateLimitException;
 import com.github.games647.changeskin.core.message.SkinUpdateMessage;
 import com.github.games647.changeskin.core.model.UUIDTypeAdapter;
 import com.github.games647.changeskin.core.model.skin.SkinModel;
@@ -75,8 +76,8 @@ public class BungeeSkinAPI implements ChangeSkinAPI<ProxiedPlayer, LoginResult>
             applyProperties(loginProfile, targetSkin);
         }
 
-        //send plugin channel update request
-        plugin.sendPluginMessage(player.getServer(), new SkinUpdateMessage(player.getName()));
+        //send plugin channel update request - batched with the updates of other players on the same server
+        plugin.queuePluginMessage(player, new SkinUpdateMessage(player.getName()));
     }
 
     @Override
@@ -94,9 +95,15 @@ public class BungeeSkinAPI implements ChangeSkinAPI<ProxiedPlayer, LoginResult>
     public void setPersistentSkin(ProxiedPlayer player, UUID targetSkinId, boolean applyNow) {
         SkinModel newSkin = plugin.getStorage().getSkin(targetSkinId);
         if (newSkin == null) {
-            Optional<SkinModel> downloadSkin = plugin.getCore().getSkinApi().downloadSkin(targetSkinId);
-            if (downloadSkin.isPresent()) {
-                newSkin = downloadSkin.get();
+            try {
+                Optional<SkinModel> downloadSkin = plugin.getCore().getSkinApi().downloadSkin(targetSkinId);
+                if (downloadSkin.isPresent()) {
+                    newSkin = downloadSkin.get();
+                }
+            } catch (RateLimitException rateLimitEx) {
+                //don't reset the skin only because Mojang couldn't be asked
+                plugin.getLog().warn("Failed to set skin {} of {}", targetSkinId, player, rateLimitEx);
+                return;
             }
         }
 
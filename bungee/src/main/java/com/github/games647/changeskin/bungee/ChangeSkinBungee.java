@@ -8,29 +8,40 @@ import com.github.games647.changeskin.bungee.command.UploadCommand;
 import com.github.games647.changeskin.bungee.listener.ConnectListener;
 import com.github.games647.changeskin.bungee.listener.PluginMessageListener;
 import com.github.games647.changeskin.bungee.listener.ServerSwitchListener;
+import com.github.games647.changeskin.bungee.task.SkinApplier;
 import com.github.games647.changeskin.core.ChangeSkinCore;
 import com.github.games647.changeskin.core.CommonUtil;
 import com.github.games647.changeskin.core.message.NamespaceKey;
 import com.github.games647.changeskin.core.PlatformPlugin;
+import com.github.games647.changeskin.core.SaveQueue;
 import com.github.games647.changeskin.core.SkinStorage;
 import com.github.games647.changeskin.core.message.ChannelMessage;
+import com.github.games647.changeskin.core.message.ChannelProtocol;
 import com.github.games647.changeskin.core.model.UserPreference;
+import com.github.games647.changeskin.core.model.skin.SkinModel;
 import com.google.common.collect.MapMaker;
-import com.google.common.io.ByteArrayDataOutput;
-import com.google.common.io.ByteStreams;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import net.md_5.bungee.api.CommandSender;
 import net.md_5.bungee.api.chat.TextComponent;
+import net.md_5.bungee.api.config.ServerInfo;
 import net.md_5.bungee.api.connection.PendingConnection;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
 import net.md_5.bungee.api.connection.Server;
 import net.md_5.bungee.api.plugin.Plugin;
 import net.md_5.bungee.api.plugin.PluginManager;
@@ -40,12 +51,17 @@ import org.slf4j.Logger;
 
 import static com.github.games647.changeskin.core.message.ForwardMessage.FORWARD_COMMAND_CHANNEL;
 import static com.github.games647.changeskin.core.message.PermResultMessage.PERMISSION_RESULT_CHANNEL;
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toList;
 
 public class ChangeSkinBungee extends Plugin implements PlatformPlugin<CommandSender> {
 
     private final ConcurrentMap<PendingConnection, UserPreference> loginSessions = new MapMaker().weakKeys().makeMap();
     private final BungeeSkinAPI api = new BungeeSkinAPI(this);
 
+    //messages that are sent together in the next frame of the backend server - guarded by itself
+    private final Map<ServerInfo, List<QueuedMessage>> pendingMessages = new HashMap<>();
+
     private ChangeSkinCore core;
     private Logger logger;
 
@@ -76,14 +92,35 @@ public class ChangeSkinBungee extends Plugin implements PlatformPlugin<CommandSe
         pluginManager.registerCommand(this, new UploadCommand(this));
         pluginManager.registerCommand(this, new SelectCommand(this));
         pluginManager.registerCommand(this, new InfoCommand(this));
+
+        preloadOnlinePlayers();
+    }
+
+    private void preloadOnlinePlayers() {
+        //warm up the cache for players who are already online like after a reload
+        List<UUID> onlinePlayers = getProxy().getPlayers().stream()
+                .map(ProxiedPlayer::getUniqueId)
+                .collect(toList());
+        if (!onlinePlayers.isEmpty() && core.getStorage() != null) {
+            getProxy().getScheduler().runAsync(this, () -> core.getStorage().getPreferences(onlinePlayers));
+        }
     }
 
     @Override
     public void onDisable() {
-        Collection<PendingConnection> toSave = new HashSet<>(loginSessions.keySet());
-        toSave.parallelStream().map(loginSessions::remove).filter(Objects::nonNull).forEach(core.getStorage()::save);
+        if (core == null) {
+            return;
+        }
 
-        if (core != null) {
+        try {
+            //the queue is missing if the database couldn't be set up
+            SaveQueue saveQueue = core.getSaveQueue();
+            if (saveQueue != null) {
+                Collection<PendingConnection> toSave = new HashSet<>(loginSessions.keySet());
+                toSave.stream().map(loginSessions::remove).filter(Objects::nonNull).filter(UserPreference::isSaved)
+                        .forEach(saveQueue::enqueue);
+            }
+        } finally {
             core.close();
         }
     }
@@ -126,12 +163,65 @@ public class ChangeSkinBungee extends Plugin implements PlatformPlugin<CommandSe
     }
 
     public void sendPluginMessage(Server server, ChannelMessage message) {
-        if (server != null) {
-            ByteArrayDataOutput out = ByteStreams.newDataOutput();
-            message.writeTo(out);
+        sendPluginMessages(server, Collections.singletonList(message));
+    }
+
+    /**
+     * @param server receiver
+     * @param messages messages of the same channel that will be packed into as few frames as possible
+     */
+    public void sendPluginMessages(Server server, Collection<? extends ChannelMessage> messages) {
+        if (server != null && !messages.isEmpty()) {
+            String channelName = messages.iterator().next().getChannelName();
+            NamespaceKey channel = new NamespaceKey(getName(), channelName);
+            for (byte[] frame : ChannelProtocol.encode(messages)) {
+                server.sendData(channel.getCombinedName(), frame);
+            }
+        }
+    }
+
+    /**
+     * Sends the message with all other messages queued for the current server of the player within the next tick.
+     * This batches bulk operations like updating all players of a server into a few plugin messages. The message is
+     * dropped if the player leaves the server in the meantime.
+     *
+     * @param player player the message is about
+     * @param message message that isn't time critical
+     */
+    public void queuePluginMessage(ProxiedPlayer player, ChannelMessage message) {
+        Server server = player.getServer();
+        if (server == null) {
+            return;
+        }
+
+        ServerInfo serverInfo = server.getInfo();
+        boolean firstMessage;
+        synchronized (pendingMessages) {
+            List<QueuedMessage> queue = pendingMessages.computeIfAbsent(serverInfo, key -> new ArrayList<>());
+            firstMessage = queue.isEmpty();
+            queue.add(new QueuedMessage(player, message));
+        }
 
-            NamespaceKey channel = new NamespaceKey(getName(), message.getChannelName());
-            server.sendData(channel.getCombinedName(), out.toByteArray());
+        if (firstMessage) {
+            getProxy().getScheduler().schedule(this, () -> flushPluginMessages(serverInfo), 50, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flushPluginMessages(ServerInfo serverInfo) {
+        List<QueuedMessage> messages;
+        synchronized (pendingMessages) {
+            messages = pendingMessages.remove(serverInfo);
+        }
+
+        if (messages != null) {
+            messages.stream()
+                    .filter(queued -> queued.isOn(serverInfo))
+                    .map(queued -> queued.message)
+                    .collect(groupingBy(ChannelMessage::getChannelName, LinkedHashMap::new, toList()))
+                    .forEach((channelName, channelMessages) -> {
+                        String channel = new NamespaceKey(getName(), channelName).getCombinedName();
+                        ChannelProtocol.encode(channelMessages).forEach(frame -> serverInfo.sendData(channel, frame));
+                    });
         }
     }
 
@@ -155,6 +245,19 @@ public class ChangeSkinBungee extends Plugin implements PlatformPlugin<CommandSe
         return core;
     }
 
+    @Override
+    public Collection<UUID> getOnlinePlayers() {
+        return getProxy().getPlayers().stream().map(ProxiedPlayer::getUniqueId).collect(toList());
+    }
+
+    @Override
+    public void applySkin(UUID playerId, SkinModel targetSkin) {
+        ProxiedPlayer player = getProxy().getPlayer(playerId);
+        if (player != null) {
+            getProxy().getScheduler().runAsync(this, new SkinApplier(this, null, player, targetSkin, false, false));
+        }
+    }
+
     @Override
     public boolean hasSkinPermission(CommandSender invoker, UUID uuid, boolean sendMessage) {
         if (invoker.hasPermission(getName().toLowerCase() + ".skin.whitelist." + uuid)) {
@@ -179,4 +282,20 @@ public class ChangeSkinBungee extends Plugin implements PlatformPlugin<CommandSe
 
         return false;
     }
+
+    private static class QueuedMessage {
+
+        private final ProxiedPlayer player;
+        private final ChannelMessage message;
+
+        QueuedMessage(ProxiedPlayer player, ChannelMessage message) {
+            this.player = player;
+            this.message = message;
+        }
+
+        boolean isOn(ServerInfo serverInfo) {
+            Server server = player.getServer();
+            return player.isConnected() && server != null && serverInfo.equals(server.getInfo());
+        }
+    }
 }
@@ -8,8 +8,8 @@ import com.github.games647.changeskin.core.shared.SharedListener;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
-import net.md_5.bungee.api.ProxyServer;
 import net.md_5.bungee.api.plugin.Listener;
 
 public abstract class AbstractSkinListener extends SharedListener implements Listener {
@@ -22,22 +22,9 @@ public abstract class AbstractSkinListener extends SharedListener implements Lis
         this.plugin = plugin;
     }
 
-    @Override
-    public void save(final UserPreference preferences) {
-        //this can run in the background
-        ProxyServer.getInstance().getScheduler().runAsync(plugin, () -> {
-            Optional<SkinModel> optSkin = preferences.getTargetSkin();
-            if (optSkin.isPresent()) {
-                if (core.getStorage().save(optSkin.get())) {
-                    core.getStorage().save(preferences);
-                }
-            } else {
-                core.getStorage().save(preferences);
-            }
-        });
-    }
-
     protected UserPreference initializeProfile(UUID uniqueId, String playerName) {
+        long deadline = getLoginDeadline();
+        CompletableFuture<Optional<UUID>> owner = prefetchOwner(uniqueId, playerName);
         UserPreference preferences = plugin.getStorage().getPreferences(uniqueId);
 
         Optional<SkinModel> optSkin = preferences.getTargetSkin();
@@ -49,10 +36,10 @@ public abstract class AbstractSkinListener extends SharedListener implements Lis
 
             preferences.setTargetSkin(targetSkin);
         } else if (core.getConfig().getBoolean("restoreSkins")) {
-            refetchSkin(playerName, preferences);
+            refetchSkin(playerName, owner, deadline, preferences);
             if (!preferences.getTargetSkin().isPresent()) {
                 //still no skin
-                getRandomSkin().ifPresent(preferences::setTargetSkin);
+                return withDefaultSkin(preferences);
             }
         }
 
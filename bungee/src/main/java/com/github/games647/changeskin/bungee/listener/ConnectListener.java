@@ -50,7 +50,8 @@ public class ConnectListener extends AbstractSkinListener {
         PendingConnection pendingConnection = disconnectEvent.getPlayer().getPendingConnection();
         UserPreference preference = plugin.endSession(pendingConnection);
 
-        if (preference != null) {
+        //unsaved sessions have no own skin or a per-login default. Chosen skins were already enqueued.
+        if (preference != null && preference.isSaved()) {
             save(preference);
         }
     }
@@ -2,13 +2,12 @@ package com.github.games647.changeskin.bungee.listener;
 
 import com.github.games647.changeskin.bungee.ChangeSkinBungee;
 import com.github.games647.changeskin.bungee.command.ChangeSkinCommand;
+import com.github.games647.changeskin.core.message.ChannelProtocol;
 import com.github.games647.changeskin.core.message.ForwardMessage;
 import com.github.games647.changeskin.core.message.NamespaceKey;
 import com.github.games647.changeskin.core.message.PermResultMessage;
 import com.github.games647.changeskin.core.model.UserPreference;
 import com.github.games647.changeskin.core.model.skin.SkinModel;
-import com.google.common.io.ByteArrayDataInput;
-import com.google.common.io.ByteStreams;
 
 import java.util.UUID;
 
@@ -42,8 +41,6 @@ public class PluginMessageListener extends AbstractSkinListener {
             return;
         }
 
-        ByteArrayDataInput dataInput = ByteStreams.newDataInput(messageEvent.getData());
-
         //the client shouldn't be able to read the messages in order to know something about server internal states
         //moreover the client shouldn't be able fake a running premium check by sending the result message
         messageEvent.setCancelled(true);
@@ -53,23 +50,26 @@ public class PluginMessageListener extends AbstractSkinListener {
             return;
         }
 
+        //malformed frames are empty
+        byte[] data = messageEvent.getData();
         ProxiedPlayer invoker = (ProxiedPlayer) messageEvent.getReceiver();
         if (channel.equals(permissionResultChannel)) {
-            PermResultMessage message = new PermResultMessage();
-            message.readFrom(dataInput);
-            if (message.isAllowed()) {
-                onPermissionSuccess(message, invoker);
-            } else {
-                plugin.sendMessage(invoker, "no-permission");
+            byte typeId = PermResultMessage.TYPE_ID;
+            for (PermResultMessage message : ChannelProtocol.decode(data, typeId, PermResultMessage::new)) {
+                if (message.isAllowed()) {
+                    onPermissionSuccess(message, invoker);
+                } else {
+                    plugin.sendMessage(invoker, "no-permission");
+                }
             }
         } else if (channel.equals(forwardCommandChannel)) {
-            onCommandForward(invoker, dataInput);
+            for (ForwardMessage message : ChannelProtocol.decode(data, ForwardMessage.TYPE_ID, ForwardMessage::new)) {
+                onCommandForward(invoker, message);
+            }
         }
     }
 
     private void onPermissionSuccess(PermResultMessage message, ProxiedPlayer invoker) {
-        SkinModel targetSkin = message.getSkin();
-
         UUID receiverUUID = message.getReceiverUUID();
         ProxiedPlayer receiver = ProxyServer.getInstance().getPlayer(receiverUUID);
         if (receiver == null || !receiver.isConnected()) {
@@ -77,18 +77,25 @@ public class PluginMessageListener extends AbstractSkinListener {
             return;
         }
 
+        //saved skins are only referenced by id and are usually still cached from the request
+        SkinModel targetSkin = message.getSkin().resolve(core.getStorage()::getSkin);
+        if (targetSkin == null) {
+            core.getLogger().warn("Skin {} of the permission result is no longer available", message.getSkin());
+            return;
+        }
+
         //add cooldown
         core.getCooldownService().trackPlayer(invoker.getUniqueId());
         //Save the target uuid from the requesting player source
-        final UserPreference preferences = core.getStorage().getPreferences(receiver.getUniqueId());
+        UserPreference preferences = plugin.getLoginSession(receiver.getPendingConnection());
+        if (preferences == null) {
+            preferences = core.getStorage().getPreferences(receiver.getUniqueId());
+        }
+
         preferences.setTargetSkin(targetSkin);
 
-        ProxyServer.getInstance().getScheduler().runAsync(plugin, () -> {
-            if (core.getStorage().save(targetSkin)) {
-                core.getStorage().save(preferences);
-            }
-        });
-        
+        core.getSaveQueue().enqueue(preferences);
+
         if (core.getConfig().getBoolean("instantSkinChange")) {
             plugin.getApi().applySkin(receiver, targetSkin);
             plugin.sendMessage(invoker, "skin-changed");
@@ -97,10 +104,7 @@ public class PluginMessageListener extends AbstractSkinListener {
         }
     }
 
-    private void onCommandForward(CommandSender invoker, ByteArrayDataInput dataInput) {
-        ForwardMessage message = new ForwardMessage();
-        message.readFrom(dataInput);
-
+    private void onCommandForward(CommandSender invoker, ForwardMessage message) {
         String commandName = message.getCommandName();
 
         PluginManager pluginManager = ProxyServer.getInstance().getPluginManager();
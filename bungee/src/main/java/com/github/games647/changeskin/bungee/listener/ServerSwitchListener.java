@@ -7,6 +7,7 @@ import com.github.games647.changeskin.core.model.skin.SkinModel;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.UUID;
 
 import net.md_5.bungee.api.ProxyServer;
 import net.md_5.bungee.api.config.ServerInfo;
@@ -16,6 +17,8 @@ import net.md_5.bungee.api.event.ServerConnectEvent;
 import net.md_5.bungee.event.EventHandler;
 import net.md_5.bungee.event.EventPriority;
 
+import static java.util.stream.Collectors.toList;
+
 public class ServerSwitchListener extends AbstractSkinListener {
 
     public ServerSwitchListener(ChangeSkinBungee plugin) {
@@ -46,6 +49,8 @@ public class ServerSwitchListener extends AbstractSkinListener {
         } else if (session == null) {
             //lazy load
             ProxyServer.getInstance().getScheduler().runAsync(plugin, () -> {
+                preloadLazyPlayers();
+
                 UserPreference preference = initializeProfile(player.getUniqueId(), plugin.getName());
                 plugin.startSession(player.getPendingConnection(), preference);
                 preference.getTargetSkin().ifPresent(skin -> plugin.getApi().applySkin(player, skin));
@@ -56,4 +61,13 @@ public class ServerSwitchListener extends AbstractSkinListener {
             optSkin.ifPresent(skin -> plugin.getApi().applySkin(player, skin));
         }
     }
+
+    private void preloadLazyPlayers() {
+        //load all players that are not loaded yet in a single bulk lookup - they will likely switch too
+        List<UUID> lazyPlayers = ProxyServer.getInstance().getPlayers().stream()
+                .filter(player -> plugin.getLoginSession(player.getPendingConnection()) == null)
+                .map(ProxiedPlayer::getUniqueId)
+                .collect(toList());
+        core.getStorage().getPreferences(lazyPlayers);
+    }
 }
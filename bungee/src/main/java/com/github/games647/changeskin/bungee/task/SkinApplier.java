@@ -3,6 +3,7 @@ package com.github.games647.changeskin.bungee.task;
 import com.github.games647.changeskin.bungee.ChangeSkinBungee;
 import com.github.games647.changeskin.core.message.ChannelMessage;
 import com.github.games647.changeskin.core.message.CheckPermMessage;
+import com.github.games647.changeskin.core.message.SkinReference;
 import com.github.games647.changeskin.core.model.UserPreference;
 import com.github.games647.changeskin.core.model.skin.SkinModel;
 import com.github.games647.changeskin.core.shared.task.SharedApplier;
@@ -43,7 +44,8 @@ public class SkinApplier extends SharedApplier {
                 Server server = ((ProxiedPlayer) invoker).getServer();
                 boolean skinPerm = core.getConfig().getBoolean("skinPermission");
 
-                ChannelMessage message = new CheckPermMessage(targetSkin, receiverUUID, skinPerm, bukkitOp);
+                SkinReference skinReference = SkinReference.of(targetSkin);
+                ChannelMessage message = new CheckPermMessage(skinReference, receiverUUID, skinPerm, bukkitOp);
                 plugin.sendPluginMessage(server, message);
                 return;
             }
@@ -76,9 +78,4 @@ public class SkinApplier extends SharedApplier {
     protected void sendMessage(String key) {
         plugin.sendMessage(invoker, key);
     }
-
-    @Override
-    protected void runAsync(Runnable runnable) {
-        runnable.run();
-    }
 }
@@ -0,0 +1,105 @@
+package com.github.games647.changeskin.core;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client side limit that additionally learns from the rejections of the server. A 429 response blocks the limiter
+ * for the time from the Retry-After header or otherwise for an exponentially growing and randomized delay. The
+ * delay starts over after the next successful response.
+ */
+public class AdaptiveRateLimiter extends RateLimiter {
+
+    private static final Duration MIN_BACKOFF = Duration.ofSeconds(5);
+    private static final Duration MAX_BACKOFF = Duration.ofMinutes(10);
+
+    private final AtomicLong blockedUntil = new AtomicLong(System.nanoTime());
+    private final AtomicInteger rejections = new AtomicInteger();
+
+    public AdaptiveRateLimiter(Duration expireDuration, int maximumRequests) {
+        super(expireDuration, maximumRequests);
+    }
+
+    @Override
+    public boolean tryAcquire(int permits) {
+        return System.nanoTime() - blockedUntil.get() >= 0 && super.tryAcquire(permits);
+    }
+
+    @Override
+    public Duration getTimeUntilNextPermit() {
+        Duration blocked = Duration.ofNanos(Math.max(blockedUntil.get() - System.nanoTime(), 0));
+        Duration limited = super.getTimeUntilNextPermit();
+        return blocked.compareTo(limited) > 0 ? blocked : limited;
+    }
+
+    /**
+     * Blocks the limiter after the server rejected a request.
+     *
+     * @param retryAfter the delay requested by the server or null if it didn't send one
+     * @return the delay until the next request is allowed
+     */
+    public Duration onRateLimited(Duration retryAfter) {
+        int attempt = rejections.incrementAndGet();
+
+        Duration delay;
+        if (retryAfter == null) {
+            //5s, 10s, 20s, ... with jitter, so the servers of a network don't retry in lockstep
+            long maxMillis = MIN_BACKOFF.toMillis() << Math.min(attempt - 1, 16);
+            maxMillis = Math.min(maxMillis, MAX_BACKOFF.toMillis());
+            delay = Duration.ofMillis(ThreadLocalRandom.current().nextLong(maxMillis / 2, maxMillis + 1));
+        } else {
+            delay = retryAfter;
+        }
+
+        long until = System.nanoTime() + delay.toNanos();
+        blockedUntil.accumulateAndGet(until, (current, next) -> next - current > 0 ? next : current);
+        return delay;
+    }
+
+    public void onSuccess() {
+        rejections.set(0);
+    }
+
+    public boolean isBlocked() {
+        return blockedUntil.get() - System.nanoTime() > 0;
+    }
+
+    /**
+     * @param header Retry-After value in seconds or as HTTP date
+     * @return the delay or null if the header is missing or invalid
+     */
+    public static Duration parseRetryAfter(String header) {
+        if (header == null || header.trim().isEmpty()) {
+            return null;
+        }
+
+        String value = header.trim();
+        try {
+            return Duration.ofSeconds(Math.max(Long.parseLong(value), 0));
+        } catch (NumberFormatException numberFormatException) {
+            try {
+                ZonedDateTime date = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME);
+                Duration delay = Duration.between(ZonedDateTime.now(date.getZone()), date);
+                return delay.isNegative() ? Duration.ZERO : delay;
+            } catch (DateTimeParseException parseException) {
+                return null;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + '{' +
+                "expireDuration=" + getExpireDuration() +
+                ", maximumRequests=" + getMaximumRequests() +
+                ", availablePermits=" + getAvailablePermits() +
+                ", rejections=" + rejections +
+                ", blocked=" + isBlocked() +
+                '}';
+    }
+}
@@ -1,9 +1,11 @@
 package com.github.games647.changeskin.core;
 
+import com.github.games647.changeskin.core.model.UserPreference;
 import com.github.games647.changeskin.core.model.auth.Account;
 import com.github.games647.changeskin.core.model.skin.SkinModel;
 import com.google.common.net.HostAndPort;
 import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -12,12 +14,21 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import net.md_5.bungee.config.Configuration;
 import net.md_5.bungee.config.ConfigurationProvider;
@@ -31,11 +42,19 @@ import static java.util.stream.Collectors.toMap;
 
 public class ChangeSkinCore {
 
+    private static final int MAX_PARALLEL_REQUESTS = 8;
+    private static final Duration NAME_BATCH_WINDOW = Duration.ofMillis(100);
+    private static final Duration PROFILE_CACHE_SAVE_INTERVAL = Duration.ofSeconds(30);
+    private static final Duration COMPACTION_SHUTDOWN_TIMEOUT = Duration.ofSeconds(5);
+
+    //share of the free skin requests the background sweep may use - the rest is left for logins and commands
+    private static final double SWEEP_SHARE = 0.5;
+
     private final Map<String, String> localeMessages = new ConcurrentHashMap<>();
 
     //this is thread-safe in order to save and load from different threads like the skin download
-    private final Map<String, UUID> uuidCache = CommonUtil.buildCache(3 * 60 * 60, 1024 * 5);
-    private final Map<String, Object> crackedNames = CommonUtil.buildCache(3 * 60 * 60, 1024 * 5);
+    private final PersistentCache<String, UUID> uuidCache = new PersistentCache<>(Duration.ofHours(3), 1024 * 5);
+    private final PersistentCache<String, Object> crackedNames = new PersistentCache<>(Duration.ofHours(3), 1024 * 5);
 
     private final PlatformPlugin<?> plugin;
     private final List<SkinModel> defaultSkins = new ArrayList<>();
@@ -43,11 +62,19 @@ public class ChangeSkinCore {
     private final MojangAuthApi authApi;
 
     private MojangSkinApi skinApi;
+    private NameBatchResolver nameResolver;
     private Configuration config;
     private SkinStorage storage;
+    private SaveQueue saveQueue;
+    private SkinRevalidator revalidator;
+    private ScheduledExecutorService scheduler;
+    private ScheduledExecutorService saveExecutor;
+    private ScheduledExecutorService compactionExecutor;
+    private ExecutorService requestExecutor;
     private CooldownService cooldownService;
 
     private Duration autoUpdateDiff;
+    private Duration loginTimeout;
 
     public ChangeSkinCore(PlatformPlugin<?> plugin) {
         this.plugin = plugin;
@@ -58,6 +85,9 @@ public class ChangeSkinCore {
         saveDefaultFile("messages.yml");
         saveDefaultFile("config.yml");
 
+        scheduler = createScheduler();
+        requestExecutor = Executors.newFixedThreadPool(MAX_PARALLEL_REQUESTS
+                , buildThreadFactory("Mojang Request Thread"));
         try {
             config = loadFile("config.yml");
             int rateLimit = config.getInt("mojang-request-limit");
@@ -65,9 +95,12 @@ public class ChangeSkinCore {
             cooldownService = new CooldownService(Duration.ofSeconds(config.getInt("cooldown")));
 
             autoUpdateDiff = Duration.ofMinutes(config.getInt("auto-skin-update"));
+            loginTimeout = Duration.ofMillis(config.getInt("login-timeout"));
             List<HostAndPort> proxies = config.getStringList("proxies")
                     .stream().map(HostAndPort::fromString).collect(toList());
-            skinApi = new MojangSkinApi(plugin.getLog(), rateLimit, proxies);
+            skinApi = new MojangSkinApi(plugin.getLog(), requestExecutor, rateLimit, proxies);
+            nameResolver = new NameBatchResolver(skinApi, scheduler, requestExecutor, NAME_BATCH_WINDOW
+                    , uuidCache, crackedNames);
 
             if (database) {
                 if (!setupDatabase(config.getSection("storage"))) {
@@ -109,9 +142,43 @@ public class ChangeSkinCore {
         String password = sqlConfig.get("password", "");
 
         boolean useSSL = sqlConfig.get("useSSL", false);
-        this.storage = new SkinStorage(this, driver, host, port, database, user, password, useSSL);
+        this.storage = new SkinStorage(this, buildCache(config.getSection("cache"))
+                , driver, host, port, database, user, password, useSSL);
         try {
-            this.storage.createTables();
+            this.storage.migrate(sqlConfig.getBoolean("binary-uuid", false));
+
+            Configuration queueConfig = config.getSection("save-queue");
+            int batchSize = queueConfig.getInt("batch-size", 50);
+            Duration flushInterval = Duration.ofMillis(queueConfig.getInt("flush-interval", 500));
+            //own thread, so slow writes don't delay the name lookups and other tasks of the scheduler
+            this.saveExecutor = Executors.newSingleThreadScheduledExecutor(buildThreadFactory("Save Thread"));
+            this.saveQueue = new SaveQueue(getLogger(), storage, saveExecutor, batchSize, flushInterval);
+            storage.setPendingSaves(saveQueue::getPending);
+
+            this.revalidator = new SkinRevalidator(getLogger(), skinApi::downloadSkinAsync, storage.getCache()::getSkin
+                    , storage::save, this::onSkinRefreshed, scheduler, autoUpdateDiff);
+            int sweepInterval = config.getInt("auto-skin-sweep");
+            if (!autoUpdateDiff.isNegative() && sweepInterval > 0) {
+                Duration interval = Duration.ofMinutes(sweepInterval);
+                scheduler.scheduleWithFixedDelay(() -> sweepSkins(interval), sweepInterval, sweepInterval
+                        , TimeUnit.MINUTES);
+            }
+
+            //restore the Mojang lookups of the last run, so the first wave of logins doesn't hit the rate limit
+            loadProfileCaches();
+            long saveInterval = PROFILE_CACHE_SAVE_INTERVAL.getSeconds();
+            scheduler.scheduleWithFixedDelay(this::saveProfileCaches, saveInterval, saveInterval, TimeUnit.SECONDS);
+
+            //the player ids of a shared database could be converted by another server
+            scheduler.scheduleWithFixedDelay(storage::checkLayout, 1, 1, TimeUnit.MINUTES);
+
+            int compactionInterval = sqlConfig.getInt("compaction-interval", 360);
+            if (compactionInterval > 0) {
+                //long running background job - kept away from the scheduler and the save queue
+                compactionExecutor = Executors.newSingleThreadScheduledExecutor(
+                        buildThreadFactory("Compaction Thread", Thread.MIN_PRIORITY));
+                compactionExecutor.scheduleWithFixedDelay(storage::compact, 1, compactionInterval, TimeUnit.MINUTES);
+            }
             return true;
         } catch (Exception ex) {
             getLogger().error("Failed to setup database.", ex);
@@ -120,6 +187,70 @@ public class ChangeSkinCore {
         return false;
     }
 
+    private void loadProfileCaches() {
+        for (PersistentCache.Entry<String, UUID> entry : storage.loadNames()) {
+            if (entry.getValue() == null) {
+                crackedNames.restore(entry.getKey(), new Object(), entry.getExpiresAt());
+            } else {
+                uuidCache.restore(entry.getKey(), entry.getValue(), entry.getExpiresAt());
+            }
+        }
+
+        PersistentCache<UUID, Object> crackedProfiles = skinApi.getCrackedProfiles();
+        storage.loadCrackedProfiles()
+                .forEach((uuid, expiresAt) -> crackedProfiles.restore(uuid, new Object(), expiresAt));
+    }
+
+    private void saveProfileCaches() {
+        PersistentCache<UUID, Object> crackedProfiles = skinApi.getCrackedProfiles();
+        uuidCache.sweep();
+        crackedNames.sweep();
+        crackedProfiles.sweep();
+
+        List<PersistentCache.Entry<String, UUID>> names = new ArrayList<>(uuidCache.drainChanges());
+        for (PersistentCache.Entry<String, Object> crackedName : crackedNames.drainChanges()) {
+            names.add(new PersistentCache.Entry<>(crackedName.getKey(), null, crackedName.getExpiresAt()));
+        }
+
+        storage.saveNames(names);
+
+        Map<UUID, Long> profiles = new HashMap<>();
+        for (PersistentCache.Entry<UUID, Object> crackedProfile : crackedProfiles.drainChanges()) {
+            profiles.put(crackedProfile.getKey(), crackedProfile.getExpiresAt());
+        }
+
+        storage.saveCrackedProfiles(profiles);
+    }
+
+    private ScheduledExecutorService createScheduler() {
+        return Executors.newSingleThreadScheduledExecutor(buildThreadFactory("Scheduler Thread"));
+    }
+
+    private ThreadFactory buildThreadFactory(String name) {
+        return buildThreadFactory(name, Thread.NORM_PRIORITY);
+    }
+
+    private ThreadFactory buildThreadFactory(String name, int priority) {
+        ThreadFactoryBuilder threadFactory = new ThreadFactoryBuilder()
+                .setNameFormat(plugin.getName() + ' ' + name + " #%1$d")
+                .setPriority(priority)
+                .setDaemon(true);
+
+        ThreadFactory platformFactory = plugin.getThreadFactory();
+        if (platformFactory != null) {
+            threadFactory.setThreadFactory(platformFactory);
+        }
+
+        return threadFactory.build();
+    }
+
+    private SkinCache buildCache(Configuration cacheConfig) {
+        int maxSkins = cacheConfig.getInt("max-skins", 2048);
+        int maxPreferences = cacheConfig.getInt("max-preferences", 1024);
+        Duration expireAfterAccess = Duration.ofMinutes(cacheConfig.getInt("expire-after-access", 30));
+        return new SkinCache(maxSkins, maxPreferences, expireAfterAccess);
+    }
+
     private boolean checkDriver(String className) {
         try {
             Class.forName(className);
@@ -157,19 +288,69 @@ public class ChangeSkinCore {
         return defaultSkins;
     }
 
+    /**
+     * Stale-while-revalidate: an outdated skin is refreshed in the background and applied to the online players
+     * using it as soon as it's downloaded.
+     *
+     * @param oldSkin stored skin
+     * @return the newest known skin of the same owner without waiting for Mojang
+     */
     public SkinModel checkAutoUpdate(SkinModel oldSkin) {
-        if (oldSkin == null) {
-            return null;
+        if (oldSkin == null || revalidator == null) {
+            return oldSkin;
+        }
+
+        return revalidator.revalidate(oldSkin);
+    }
+
+    private void onSkinRefreshed(SkinModel freshSkin) {
+        for (UserPreference preferences : storage.getPreferences(plugin.getOnlinePlayers()).values()) {
+            //players who chose their skin don't get automatic updates like on login
+            SkinModel targetSkin = preferences.getTargetSkin().orElse(null);
+            if (targetSkin == null || preferences.isKeepSkin()
+                    || !targetSkin.getProfileId().equals(freshSkin.getProfileId())
+                    || targetSkin.getTimestamp() >= freshSkin.getTimestamp()) {
+                continue;
+            }
+
+            if (targetSkin.getTextureHash().equals(freshSkin.getTextureHash())) {
+                //same textures - the fresh timestamp keeps the sweep from downloading it again
+                preferences.setTargetSkin(freshSkin);
+                if (targetSkin.getRowId() != freshSkin.getRowId()) {
+                    saveQueue.enqueue(preferences);
+                }
+            } else {
+                plugin.applySkin(preferences.getUuid(), freshSkin);
+            }
         }
+    }
 
-        if (oldSkin.isOutdated(autoUpdateDiff)) {
-            Optional<SkinModel> updatedSkin = skinApi.downloadSkin(oldSkin.getProfileId());
-            if (updatedSkin.isPresent() && !Objects.equals(updatedSkin.get(), oldSkin)) {
-                return updatedSkin.get();
+    private void sweepSkins(Duration interval) {
+        try {
+            List<SkinModel> skins = storage.getPreferences(plugin.getOnlinePlayers()).values().stream()
+                    .filter(preferences -> !preferences.isKeepSkin())
+                    .map(UserPreference::getTargetSkin)
+                    .filter(Optional::isPresent)
+                    .map(Optional::get)
+                    .collect(toList());
+
+            //skins that would be outdated before the next run are refreshed now
+            int budget = (int) (skinApi.getAvailableSkinRequests() * SWEEP_SHARE);
+            int started = revalidator.sweep(skins, interval, budget);
+            if (started > 0) {
+                getLogger().debug("Refreshing {} skins of online players in the background", started);
             }
+        } catch (RuntimeException ex) {
+            //an exception would cancel the next runs
+            getLogger().error("Failed to refresh the skins of online players", ex);
         }
+    }
 
-        return oldSkin;
+    /**
+     * @return maximum time a login waits for Mojang
+     */
+    public Duration getLoginTimeout() {
+        return loginTimeout;
     }
 
     private Configuration loadFile(String fileName) throws IOException {
@@ -212,26 +393,55 @@ public class ChangeSkinCore {
     }
 
     private void loadDefaultSkins(Iterable<String> defaults) {
+        List<Integer> rowIds = new ArrayList<>();
+        List<UUID> owners = new ArrayList<>();
         for (String id : defaults) {
             Integer rowId = Ints.tryParse(id);
             if (rowId != null) {
-                // TODO: use batched loads and saves
-                Optional.ofNullable(storage.getSkin(rowId)).ifPresent(defaultSkins::add);
+                rowIds.add(rowId);
+                continue;
             }
 
-            UUID ownerUUID = UUID.fromString(id);
-            SkinModel skinData = storage.getSkin(ownerUUID);
-            if (skinData == null) {
-                Optional<SkinModel> optSkin = skinApi.downloadSkin(ownerUUID);
-                if (optSkin.isPresent()) {
-                    skinData = optSkin.get();
-                    uuidCache.put(skinData.getProfileName(), skinData.getProfileId());
-                    storage.save(skinData);
-                }
+            try {
+                owners.add(UUID.fromString(id));
+            } catch (IllegalArgumentException argumentException) {
+                getLogger().warn("Ignoring invalid default skin {}. It's neither a row id nor a UUID", id);
             }
+        }
+
+        defaultSkins.addAll(storage.getSkins(rowIds).values());
 
-            defaultSkins.add(skinData);
+        Map<UUID, SkinModel> storedSkins = storage.getSkinsByOwner(owners);
+        defaultSkins.addAll(storedSkins.values());
+
+        List<UUID> missing = owners.stream().filter(owner -> !storedSkins.containsKey(owner)).collect(toList());
+        List<SkinModel> downloaded = downloadSkins(missing);
+        for (SkinModel skinData : downloaded) {
+            uuidCache.put(skinData.getProfileName(), skinData.getProfileId());
         }
+
+        storage.saveSkins(downloaded);
+        defaultSkins.addAll(downloaded);
+    }
+
+    private List<SkinModel> downloadSkins(Collection<UUID> owners) {
+        if (owners.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        //a failed download only drops that skin instead of aborting the start
+        List<CompletableFuture<Optional<SkinModel>>> downloads = owners.stream()
+                .map(owner -> skinApi.downloadSkinAsync(owner).exceptionally(error -> {
+                    getLogger().error("Failed to download default skin of {}", owner, error);
+                    return Optional.empty();
+                }))
+                .collect(toList());
+
+        return downloads.stream()
+                .map(CompletableFuture::join)
+                .filter(Optional::isPresent)
+                .map(Optional::get)
+                .collect(toList());
     }
 
     private void loadAccounts(Iterable<String> accounts) {
@@ -247,9 +457,44 @@ public class ChangeSkinCore {
     }
 
     public void close() {
+        if (storage != null) {
+            saveProfileCaches();
+        }
+
         defaultSkins.clear();
         uuidCache.clear();
 
+        if (compactionExecutor != null) {
+            //interrupts the pause between two chunks
+            compactionExecutor.shutdownNow();
+            try {
+                //a running chunk has to finish its transaction before the connection pool closes
+                Duration timeout = COMPACTION_SHUTDOWN_TIMEOUT;
+                if (!compactionExecutor.awaitTermination(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                    getLogger().warn("Compaction didn't finish within {}. Closing the storage anyway", timeout);
+                }
+            } catch (InterruptedException interruptedEx) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (saveQueue != null) {
+            //drain the pending saves before the connection pool closes
+            saveQueue.close();
+        }
+
+        if (saveExecutor != null) {
+            saveExecutor.shutdown();
+        }
+
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+
+        if (requestExecutor != null) {
+            requestExecutor.shutdown();
+        }
+
         if (storage != null) {
             storage.close();
         }
@@ -259,6 +504,10 @@ public class ChangeSkinCore {
         return skinApi;
     }
 
+    public NameBatchResolver getNameResolver() {
+        return nameResolver;
+    }
+
     public MojangAuthApi getAuthApi() {
         return authApi;
     }
@@ -267,6 +516,14 @@ public class ChangeSkinCore {
         return storage;
     }
 
+    public SaveQueue getSaveQueue() {
+        return saveQueue;
+    }
+
+    public ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+
     public Configuration getConfig() {
         return config;
     }
@@ -5,6 +5,7 @@ import com.google.common.cache.CacheLoader;
 import com.google.common.net.HttpHeaders;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.Constructor;
 import java.net.HttpURLConnection;
 import java.net.Proxy;
@@ -22,6 +23,9 @@ public class CommonUtil {
     private static final int TIMEOUT = 3000;
     private static final String USER_AGENT = "ChangeSkin-Bukkit-Plugin";
 
+    //bodies up to this size are read to the end in order to keep the connection alive
+    private static final int MAX_DISCARD_BYTES = 8 * 1024;
+
     private static final char COLOR_CHAR = '&';
     private static final char TRANSLATED_CHAR = '§';
 
@@ -71,6 +75,43 @@ public class CommonUtil {
         return httpConnection;
     }
 
+    /**
+     * Consumes the rest of the response. The JDK only returns the connection to its keep-alive cache after the body
+     * is read completely and closed. This way the following requests to the same host skip the connect and TLS
+     * handshake. Large bodies aren't worth reading, so their connection is closed instead.
+     *
+     * @param connection connection after receiving the response code
+     */
+    public static void discardResponse(HttpURLConnection connection) {
+        InputStream in;
+        try {
+            in = connection.getInputStream();
+        } catch (IOException ioEx) {
+            //error responses are only available using this stream
+            in = connection.getErrorStream();
+        }
+
+        if (in == null) {
+            return;
+        }
+
+        byte[] buffer = new byte[1024];
+        try (InputStream body = in) {
+            int discarded = 0;
+            int read;
+            while (discarded <= MAX_DISCARD_BYTES && (read = body.read(buffer)) != -1) {
+                discarded += read;
+            }
+
+            if (discarded > MAX_DISCARD_BYTES) {
+                connection.disconnect();
+            }
+        } catch (IOException ioEx) {
+            //the connection is dropped anyway
+            connection.disconnect();
+        }
+    }
+
     /**
      * This creates a SLF4J logger. In the process it initializes the SLF4J service provider. This method looks
      * for the provider in the plugin jar instead of in the server jar when creating a Logger. The provider is only
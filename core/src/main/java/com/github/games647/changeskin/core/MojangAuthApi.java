@@ -8,11 +8,11 @@ import com.google.common.net.UrlEscapers;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
+import java.io.Reader;
 import java.net.HttpURLConnection;
 import java.nio.charset.StandardCharsets;
 import java.util.Optional;
@@ -43,8 +43,8 @@ public class MojangAuthApi {
                 writer.append(gson.toJson(new AuthRequest(email, password)));
             }
 
-            try (BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(httpConnection.getInputStream(), StandardCharsets.UTF_8))) {
+            //gson buffers the reader itself
+            try (Reader reader = new InputStreamReader(httpConnection.getInputStream(), StandardCharsets.UTF_8)) {
                 AuthResponse authResponse = gson.fromJson(reader, AuthResponse.class);
                 return Optional.of(new Account(authResponse.getSelectedProfile(), authResponse.getAccessToken()));
             }
@@ -75,6 +75,7 @@ public class MojangAuthApi {
             }
 
             logger.debug("Response code for uploading {}", httpConnection.getResponseCode());
+            CommonUtil.discardResponse(httpConnection);
         } catch (IOException ioEx) {
             logger.error("Tried uploading {}'s skin data {} to Mojang {}", ownerId, sourceUrl, url, ioEx);
         }
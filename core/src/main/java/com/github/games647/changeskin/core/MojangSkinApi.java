@@ -3,18 +3,20 @@ package com.github.games647.changeskin.core;
 import com.github.games647.changeskin.core.model.GameProfile;
 import com.github.games647.changeskin.core.model.UUIDTypeAdapter;
 import com.github.games647.changeskin.core.model.skin.SkinModel;
-import com.github.games647.changeskin.core.model.skin.SkinProperty;
-import com.github.games647.changeskin.core.model.skin.TexturesModel;
-import com.google.common.collect.Iterables;
+import com.github.games647.changeskin.core.model.skin.SkinModelParser;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.io.ByteStreams;
 import com.google.common.io.CharStreams;
 import com.google.common.net.HostAndPort;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.net.HttpURLConnection;
 import java.net.InetSocketAddress;
@@ -25,21 +27,33 @@ import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.Collection;
-import java.util.Iterator;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.regex.Pattern;
 
 import org.slf4j.Logger;
 
 import static com.github.games647.changeskin.core.CommonUtil.getConnection;
+import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toSet;
 
 public class MojangSkinApi {
 
     private static final String UUID_URL = "https://api.mojang.com/users/profiles/minecraft/";
+    private static final String PROFILES_URL = "https://api.mojang.com/profiles/minecraft";
+
+    //the single and the bulk name lookups share the limit of this host
+    private static final String API_BUCKET = "api.mojang.com";
+    private static final String SESSION_BUCKET = "sessionserver.mojang.com";
+
     private static final String SKIN_URL = "https://sessionserver.mojang.com/session/minecraft/profile/%s" +
             "?unsigned=false";
     private static final String RATE_LIMIT_MSG = "Mojang's rate-limit reached. The public IPv4 address of this server" +
@@ -48,54 +62,94 @@ public class MojangSkinApi {
             " UUID directly. If you are using BungeeCord, consider adding a caching server in order to " +
             " prevent multiple spigot servers creating the same requests against Mojang's servers.";
 
+    private static final int MAX_ERROR_BYTES = 1024;
+
+    //connect and read timeout of a single request
+    private static final Duration MAX_SHARED_WAIT = Duration.ofSeconds(9);
+
     private final Gson gson = new GsonBuilder().registerTypeAdapter(UUID.class, new UUIDTypeAdapter()).create();
 
+    public static final int MAX_BATCH_NAMES = 10;
+
     private final Pattern validNamePattern = Pattern.compile("^\\w{2,16}$");
-    private final Iterator<Proxy> proxies;
+    private final ProxyPool proxies;
     private final Logger logger;
+    private final String profilesUrl;
+
+    private final RateLimitBuckets rateLimits;
+    private final PersistentCache<UUID, Object> crackedUUID = new PersistentCache<>(Duration.ofMinutes(1), -1);
 
-    private final RateLimiter rateLimiter;
-    private final Map<UUID, Object> crackedUUID = CommonUtil.buildCache(60, -1);
+    //concurrent lookups of the same player share a single request and rate limit slot
+    private final SingleFlight<String, Optional<UUID>> nameRequests;
+    private final SingleFlight<UUID, Optional<SkinModel>> skinRequests;
 
     private Instant lastRateMsg = Instant.now().minus(10, ChronoUnit.MINUTES);
 
-    public MojangSkinApi(Logger logger, int rateLimit, Collection<HostAndPort> proxies) {
+    public MojangSkinApi(Logger logger, Executor requestExecutor, int rateLimit, Collection<HostAndPort> proxies) {
+        this(logger, requestExecutor, rateLimit, proxies, PROFILES_URL);
+    }
+
+    MojangSkinApi(Logger logger, Executor requestExecutor, int rateLimit, Collection<HostAndPort> proxies
+            , String profilesUrl) {
         this.logger = logger;
-        this.rateLimiter = new RateLimiter(Duration.ofMinutes(10), Math.max(rateLimit, 600));
+        this.profilesUrl = profilesUrl;
+        this.nameRequests = new SingleFlight<>(requestExecutor, MAX_SHARED_WAIT);
+        this.skinRequests = new SingleFlight<>(requestExecutor, MAX_SHARED_WAIT);
+        this.rateLimits = new RateLimitBuckets(Duration.ofMinutes(10), Math.max(rateLimit, 600));
 
         Set<Proxy> proxyBuilder = proxies.stream()
                 .map(proxy -> new InetSocketAddress(proxy.getHost(), proxy.getPort()))
                 .map(sa -> new Proxy(Type.HTTP, sa))
                 .collect(toSet());
 
-        this.proxies = Iterables.cycle(proxyBuilder).iterator();
+        //every proxy has its own address and therefore the full limit of Mojang
+        this.proxies = new ProxyPool(proxyBuilder, Duration.ofMinutes(10), 600);
+    }
+
+    /**
+     * Non-blocking variant of {@link #getUUID(String)}. The request runs on the bounded request executor, so the
+     * calling thread is free during the network wait.
+     *
+     * @param playerName query player name
+     * @return future completing with the uuid or exceptionally with a {@link NotPremiumException} or
+     * {@link RateLimitException} as cause
+     */
+    public CompletableFuture<Optional<UUID>> getUUIDAsync(String playerName) {
+        return nameRequests.getAsync(playerName.toLowerCase(Locale.ROOT), () -> requestUUID(playerName));
     }
 
     public Optional<UUID> getUUID(String playerName) throws NotPremiumException, RateLimitException {
+        try {
+            return nameRequests.get(playerName.toLowerCase(Locale.ROOT), () -> requestUUID(playerName));
+        } catch (Exception ex) {
+            Throwables.throwIfInstanceOf(ex, NotPremiumException.class);
+            Throwables.throwIfInstanceOf(ex, RateLimitException.class);
+            Throwables.throwIfUnchecked(ex);
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private Optional<UUID> requestUUID(String playerName) throws NotPremiumException, RateLimitException {
         logger.debug("Making UUID->Name request for {}", playerName);
         if (!validNamePattern.matcher(playerName).matches()) {
             throw new NotPremiumException(playerName);
         }
 
         try {
-            Optional<HttpURLConnection> connection = selectConnection(playerName);
+            Optional<Connection> connection = selectConnection(UUID_URL + playerName, API_BUCKET);
             if (connection.isPresent()) {
                 try {
                     return getUUID(connection.get(), playerName);
                 } catch (RateLimitException rateLimitEx) {
                     //retry with a proxy if available
-                    connection = getProxyConnection(playerName);
+                    connection = getProxyConnection(UUID_URL + playerName, API_BUCKET);
                     if (connection.isPresent()) {
                         return getUUID(connection.get(), playerName);
                     }
                 }
             }
 
-            if (Duration.between(lastRateMsg, Instant.now()).getSeconds() > 60 * 10) {
-                lastRateMsg = Instant.now();
-                logger.info(RATE_LIMIT_MSG);
-            }
-
+            printRateLimitMessage();
             throw new RateLimitException(playerName);
         } catch (IOException ioEx) {
             logger.error("Tried converting player name: {} to uuid", playerName, ioEx);
@@ -105,32 +159,187 @@ public class MojangSkinApi {
     }
 
     /**
-     * @param playerName query player uuid
+     * @return profiles without skin data
+     */
+    public PersistentCache<UUID, Object> getCrackedProfiles() {
+        return crackedUUID;
+    }
+
+    /**
+     * Resolves multiple names using a single request against the bulk profiles endpoint. This counts only once
+     * against the rate limit.
+     *
+     * @param playerNames up to {@link #MAX_BATCH_NAMES} names
+     * @return found uuids by their lower case name. Names that are missing don't have a premium account.
+     * @throws RateLimitException if the local and the proxy limits are exhausted
+     * @throws IOException on connection failure
+     */
+    public Map<String, UUID> getUUIDs(Collection<String> playerNames) throws RateLimitException, IOException {
+        Preconditions.checkArgument(playerNames.size() <= MAX_BATCH_NAMES, "Too many names in a single request");
+
+        List<String> validNames = playerNames.stream()
+                .filter(name -> validNamePattern.matcher(name).matches())
+                .collect(toList());
+        if (validNames.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        logger.debug("Making bulk UUID->Name request for {}", validNames);
+        String payload = gson.toJson(validNames);
+
+        Optional<Connection> connection = selectConnection(profilesUrl, API_BUCKET);
+        if (connection.isPresent()) {
+            try {
+                return getUUIDs(connection.get(), payload);
+            } catch (RateLimitException rateLimitEx) {
+                connection = getProxyConnection(profilesUrl, API_BUCKET);
+                if (connection.isPresent()) {
+                    return getUUIDs(connection.get(), payload);
+                }
+            }
+        }
+
+        printRateLimitMessage();
+        throw new RateLimitException(String.join(", ", validNames));
+    }
+
+    private Map<String, UUID> getUUIDs(Connection connection, String payload)
+            throws IOException, RateLimitException {
+        HttpURLConnection httpConnection = connection.http;
+        httpConnection.setRequestMethod("POST");
+        httpConnection.setDoOutput(true);
+        try (OutputStream out = httpConnection.getOutputStream()) {
+            out.write(payload.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException ioEx) {
+            connection.onFailure();
+            throw ioEx;
+        }
+
+        int responseCode = getResponseCode(connection, API_BUCKET);
+        if (responseCode == RateLimitException.RATE_LIMIT_ID) {
+            throw new RateLimitException(payload);
+        }
+
+        if (responseCode != HttpURLConnection.HTTP_OK) {
+            printErrorStream(httpConnection, responseCode);
+            throw new IOException("Unexpected response " + responseCode + " for bulk name request");
+        }
+
+        try (Reader reader = new InputStreamReader(httpConnection.getInputStream(), StandardCharsets.UTF_8)) {
+            GameProfile[] profiles = gson.fromJson(reader, GameProfile[].class);
+
+            Map<String, UUID> result = new HashMap<>();
+            if (profiles != null) {
+                for (GameProfile profile : profiles) {
+                    result.put(profile.getName().toLowerCase(Locale.ROOT), profile.getId());
+                }
+            }
+
+            return result;
+        }
+    }
+
+    private void printRateLimitMessage() {
+        if (Duration.between(lastRateMsg, Instant.now()).getSeconds() > 60 * 10) {
+            lastRateMsg = Instant.now();
+            logger.info(RATE_LIMIT_MSG);
+        }
+    }
+
+    /**
+     * @param url request url
+     * @param bucket rate limit of the endpoint
      * @return http connection
      * @throws IOException on failure to connect
      */
-    private Optional<HttpURLConnection> selectConnection(String playerName) throws IOException {
-        if (rateLimiter.tryAcquire()) {
-            return Optional.of(getConnection(UUID_URL + playerName));
+    private Optional<Connection> selectConnection(String url, String bucket) throws IOException {
+        if (rateLimits.tryAcquire(bucket)) {
+            return Optional.of(new Connection(getConnection(url), null));
         } else {
-            return getProxyConnection(playerName);
+            return getProxyConnection(url, bucket);
         }
     }
 
-    private Optional<HttpURLConnection> getProxyConnection(String playerName) throws IOException {
-        synchronized (proxies) {
-            if (proxies.hasNext()) {
-                Proxy proxy = proxies.next();
-                return Optional.of(getConnection(UUID_URL + playerName, proxy));
-            }
+    private Optional<Connection> getProxyConnection(String url, String bucket) throws IOException {
+        Optional<ProxyPool.Node> node = proxies.acquire(bucket);
+        if (node.isPresent()) {
+            return Optional.of(new Connection(getConnection(url, node.get().getProxy()), node.get()));
         }
 
         return Optional.empty();
     }
 
-    private Optional<UUID> getUUID(HttpURLConnection connection, String playerName)
+    public ProxyPool getProxies() {
+        return proxies;
+    }
+
+    /**
+     * @return number of skin downloads that could be sent right now using the local address and all proxies
+     */
+    public int getAvailableSkinRequests() {
+        int available = getAvailablePermits(rateLimits.getBucket(SESSION_BUCKET));
+        for (ProxyPool.Node node : proxies.getNodes()) {
+            if (!node.isBroken()) {
+                available += getAvailablePermits(node.getLimits().getBucket(SESSION_BUCKET));
+            }
+        }
+
+        return available;
+    }
+
+    private int getAvailablePermits(AdaptiveRateLimiter limiter) {
+        return limiter.isBlocked() ? 0 : limiter.getAvailablePermits();
+    }
+
+    private int getResponseCode(Connection connection, String bucket) throws IOException {
+        int responseCode;
+        try {
+            responseCode = connection.http.getResponseCode();
+        } catch (IOException ioEx) {
+            connection.onFailure();
+            throw ioEx;
+        }
+
+        onResponse(connection, bucket, responseCode);
+        if (responseCode == HttpURLConnection.HTTP_NO_CONTENT || responseCode == RateLimitException.RATE_LIMIT_ID) {
+            //the body isn't used, but it has to be consumed before the connection could be reused
+            CommonUtil.discardResponse(connection.http);
+        }
+
+        return responseCode;
+    }
+
+    /**
+     * Lets the limit of the endpoint learn from the response. Proxies track their own limits and health, because
+     * their requests don't count against the address of this server.
+     */
+    private void onResponse(Connection connection, String bucket, int responseCode) {
+        ProxyPool.Node proxy = connection.proxy;
+        if (responseCode == RateLimitException.RATE_LIMIT_ID) {
+            String header = connection.http.getHeaderField("Retry-After");
+            Duration retryAfter = AdaptiveRateLimiter.parseRetryAfter(header);
+
+            Duration backoff;
+            if (proxy == null) {
+                backoff = rateLimits.getBucket(bucket).onRateLimited(retryAfter);
+            } else {
+                backoff = proxy.onRateLimited(bucket, retryAfter);
+            }
+
+            logger.debug("Rate limited by {} using proxy {}. Pausing requests for {}", bucket, proxy, backoff);
+        } else if (responseCode >= HttpURLConnection.HTTP_INTERNAL_ERROR && proxy != null) {
+            //bad gateway or similar errors are likely caused by the proxy
+            proxy.onFailure();
+        } else if (proxy != null) {
+            proxy.onSuccess(bucket, Duration.ofNanos(System.nanoTime() - connection.started));
+        } else if (responseCode < HttpURLConnection.HTTP_BAD_REQUEST) {
+            rateLimits.getBucket(bucket).onSuccess();
+        }
+    }
+
+    private Optional<UUID> getUUID(Connection connection, String playerName)
             throws IOException, RateLimitException, NotPremiumException {
-        int responseCode = connection.getResponseCode();
+        int responseCode = getResponseCode(connection, API_BUCKET);
         if (responseCode == HttpURLConnection.HTTP_NO_CONTENT) {
             throw new NotPremiumException(playerName);
         } else if (responseCode == RateLimitException.RATE_LIMIT_ID) {
@@ -138,12 +347,11 @@ public class MojangSkinApi {
         }
 
         if (responseCode == HttpURLConnection.HTTP_OK) {
-            try (BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+            try (Reader reader = new InputStreamReader(connection.http.getInputStream(), StandardCharsets.UTF_8)) {
                 return parseUUID(reader);
             }
         } else {
-            printErrorStream(connection, responseCode);
+            printErrorStream(connection.http, responseCode);
         }
 
         return Optional.empty();
@@ -151,34 +359,94 @@ public class MojangSkinApi {
 
     private void printErrorStream(HttpURLConnection connection, int responseCode) throws IOException {
         boolean proxy = connection.usingProxy();
+        logger.error("Received response: {} for {} using proxy?: {}", responseCode, connection.getURL(), proxy);
 
         //this necessary, because we cannot access input stream if the response code is something like 404
-        try (InputStream in = responseCode < HttpURLConnection.HTTP_BAD_REQUEST ?
-                connection.getInputStream() : connection.getErrorStream()) {
-            logger.error("Received response: {} for {} using proxy?: {}", responseCode, connection.getURL(), proxy);
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
-                logger.error("Error stream: {}", CharStreams.toString(reader));
-            }
+        InputStream in = responseCode < HttpURLConnection.HTTP_BAD_REQUEST ?
+                connection.getInputStream() : connection.getErrorStream();
+        if (in == null) {
+            return;
+        }
+
+        //only the start is useful for the log and error pages of a proxy could be large
+        try (Reader reader = new InputStreamReader(ByteStreams.limit(in, MAX_ERROR_BYTES), StandardCharsets.UTF_8)) {
+            logger.error("Error stream: {}", CharStreams.toString(reader));
         }
     }
 
-    public Optional<SkinModel> downloadSkin(UUID ownerUUID) {
-        if (crackedUUID.containsKey(ownerUUID) || ownerUUID == null) {
+    /**
+     * Non-blocking variant of {@link #downloadSkin(UUID)} running on the bounded request executor.
+     *
+     * @param ownerUUID skin owner
+     * @return future completing with the skin if the owner has one or exceptionally with a
+     * {@link RateLimitException} as cause
+     */
+    public CompletableFuture<Optional<SkinModel>> downloadSkinAsync(UUID ownerUUID) {
+        if (ownerUUID == null || crackedUUID.containsKey(ownerUUID)) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+
+        return skinRequests.getAsync(ownerUUID, () -> requestSkin(ownerUUID));
+    }
+
+    /**
+     * @param ownerUUID skin owner
+     * @return the skin if the owner has one
+     * @throws RateLimitException if the local and the proxy limits are exhausted
+     */
+    public Optional<SkinModel> downloadSkin(UUID ownerUUID) throws RateLimitException {
+        if (ownerUUID == null || crackedUUID.containsKey(ownerUUID)) {
             return Optional.empty();
         }
 
+        try {
+            return skinRequests.get(ownerUUID, () -> requestSkin(ownerUUID));
+        } catch (Exception ex) {
+            Throwables.throwIfInstanceOf(ex, RateLimitException.class);
+            Throwables.throwIfUnchecked(ex);
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private Optional<SkinModel> requestSkin(UUID ownerUUID) throws RateLimitException {
         //unsigned is needed in order to receive the signature
-        String uuidString = UUIDTypeAdapter.toMojangId(ownerUUID);
+        String url = String.format(SKIN_URL, UUIDTypeAdapter.toMojangId(ownerUUID));
         try {
-            HttpURLConnection conn = getConnection(String.format(SKIN_URL, uuidString));
-            if (conn.getResponseCode() == HttpURLConnection.HTTP_NO_CONTENT) {
+            Optional<Connection> connection = selectConnection(url, SESSION_BUCKET);
+            int responseCode = -1;
+            if (connection.isPresent()) {
+                responseCode = getResponseCode(connection.get(), SESSION_BUCKET);
+                if (responseCode == RateLimitException.RATE_LIMIT_ID) {
+                    //retry with a proxy if available
+                    connection = getProxyConnection(url, SESSION_BUCKET);
+                    if (connection.isPresent()) {
+                        responseCode = getResponseCode(connection.get(), SESSION_BUCKET);
+                    }
+                }
+            }
+
+            if (!connection.isPresent() || responseCode == RateLimitException.RATE_LIMIT_ID) {
+                Duration wait = rateLimits.getBucket(SESSION_BUCKET).getTimeUntilNextPermit();
+                logger.debug("Skin download of {} is rate limited for {}", ownerUUID, wait);
+
+                //not the same as a profile without a skin, so callers could retry or report it
+                printRateLimitMessage();
+                throw new RateLimitException(ownerUUID);
+            }
+
+            HttpURLConnection conn = connection.get().http;
+            if (responseCode == HttpURLConnection.HTTP_NO_CONTENT) {
                 crackedUUID.put(ownerUUID, new Object());
                 return Optional.empty();
             }
 
-            try (BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8))
-            ) {
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                printErrorStream(conn, responseCode);
+                return Optional.empty();
+            }
+
+            //streams straight into gson, which has its own buffer
+            try (Reader reader = new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8)) {
                 return parseSkinTexture(reader);
             }
         } catch (IOException ex) {
@@ -194,25 +462,32 @@ public class MojangSkinApi {
     }
 
     private Optional<SkinModel> parseSkinTexture(Reader reader) {
-        TexturesModel texturesModel = gson.fromJson(reader, TexturesModel.class);
-
-        SkinProperty[] properties = texturesModel.getProperties();
         try {
-            if (properties != null && properties.length > 0) {
-                SkinProperty propertiesModel = properties[0];
+            return SkinModelParser.parseProfile(reader);
+        } catch (JsonParseException parseEx) {
+            logger.error("Failed to parse skin model", parseEx);
+        }
 
-                //base64 encoded skin data
-                String encodedSkin = propertiesModel.getValue();
-                String signature = propertiesModel.getSignature();
+        return Optional.empty();
+    }
 
-                return Optional.of(SkinModel.createSkinFromEncoded(encodedSkin, signature));
-            }
-        } catch (Exception ex) {
-            logger.error("Failed to parse skin model", ex);
-            logger.error(texturesModel.toString());
-        }
+    private static class Connection {
 
+        private final HttpURLConnection http;
 
-        return Optional.empty();
+        //null for direct requests
+        private final ProxyPool.Node proxy;
+        private final long started = System.nanoTime();
+
+        Connection(HttpURLConnection http, ProxyPool.Node proxy) {
+            this.http = http;
+            this.proxy = proxy;
+        }
+
+        void onFailure() {
+            if (proxy != null) {
+                proxy.onFailure();
+            }
+        }
     }
 }
@@ -0,0 +1,162 @@
+package com.github.games647.changeskin.core;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.games647.changeskin.core.MojangSkinApi.MAX_BATCH_NAMES;
+
+/**
+ * Collects name lookups over a short window and resolves them together using the bulk profiles endpoint. A full
+ * batch is sent immediately. The results fill the uuid and cracked name caches of the core.
+ */
+public class NameBatchResolver {
+
+    private final MojangSkinApi skinApi;
+    private final ScheduledExecutorService scheduler;
+    private final Executor requestExecutor;
+    private final Duration window;
+
+    private final Map<String, UUID> uuidCache;
+    private final Map<String, Object> crackedNames;
+
+    //lower case name -> pending lookup
+    private final Map<String, PendingName> pending = new LinkedHashMap<>();
+    private ScheduledFuture<?> flushTask;
+
+    public NameBatchResolver(MojangSkinApi skinApi, ScheduledExecutorService scheduler, Executor requestExecutor
+            , Duration window, Map<String, UUID> uuidCache, Map<String, Object> crackedNames) {
+        this.skinApi = skinApi;
+        this.scheduler = scheduler;
+        this.requestExecutor = requestExecutor;
+        this.window = window;
+
+        this.uuidCache = uuidCache;
+        this.crackedNames = crackedNames;
+    }
+
+    /**
+     * @param playerName player name
+     * @return future completing with the uuid or an empty optional if the name has no premium account. It
+     * completes exceptionally with a {@link RateLimitException} or {@link IOException} if the request failed.
+     */
+    public CompletableFuture<Optional<UUID>> resolve(String playerName) {
+        UUID cached = uuidCache.get(playerName);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(Optional.of(cached));
+        }
+
+        if (crackedNames.containsKey(playerName)) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+
+        String key = playerName.toLowerCase(Locale.ROOT);
+        synchronized (pending) {
+            PendingName existing = pending.get(key);
+            if (existing != null) {
+                return existing.future;
+            }
+
+            PendingName added = new PendingName(playerName);
+            pending.put(key, added);
+            if (pending.size() >= MAX_BATCH_NAMES) {
+                flush();
+            } else if (flushTask == null) {
+                flushTask = scheduler.schedule(this::flush, window.toMillis(), TimeUnit.MILLISECONDS);
+            }
+
+            return added.future;
+        }
+    }
+
+    /**
+     * Sends all pending names in batches of the maximum request size.
+     */
+    public void flush() {
+        List<List<PendingName>> batches = new ArrayList<>();
+        synchronized (pending) {
+            if (flushTask != null) {
+                flushTask.cancel(false);
+                flushTask = null;
+            }
+
+            Iterator<PendingName> iterator = pending.values().iterator();
+            while (iterator.hasNext()) {
+                List<PendingName> batch = new ArrayList<>(MAX_BATCH_NAMES);
+                while (iterator.hasNext() && batch.size() < MAX_BATCH_NAMES) {
+                    batch.add(iterator.next());
+                    iterator.remove();
+                }
+
+                batches.add(batch);
+            }
+        }
+
+        for (List<PendingName> batch : batches) {
+            try {
+                requestExecutor.execute(() -> resolveBatch(batch));
+            } catch (RuntimeException rejectedEx) {
+                batch.forEach(name -> name.future.completeExceptionally(rejectedEx));
+            }
+        }
+    }
+
+    public int getPendingCount() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    private void resolveBatch(List<PendingName> batch) {
+        try {
+            completeBatch(batch);
+        } catch (RateLimitException | IOException ex) {
+            batch.forEach(name -> name.future.completeExceptionally(ex));
+        } catch (RuntimeException ex) {
+            //like a malformed response - the logins waiting for these names must not hang
+            IOException ioEx = new IOException("Failed to resolve names " + batch.size(), ex);
+            batch.forEach(name -> name.future.completeExceptionally(ioEx));
+        }
+    }
+
+    private void completeBatch(List<PendingName> batch) throws RateLimitException, IOException {
+        List<String> names = new ArrayList<>(batch.size());
+        for (PendingName name : batch) {
+            names.add(name.playerName);
+        }
+
+        Map<String, UUID> found = skinApi.getUUIDs(names);
+        for (PendingName name : batch) {
+            UUID uuid = found.get(name.playerName.toLowerCase(Locale.ROOT));
+            if (uuid == null) {
+                crackedNames.put(name.playerName, new Object());
+                name.future.complete(Optional.empty());
+            } else {
+                uuidCache.put(name.playerName, uuid);
+                name.future.complete(Optional.of(uuid));
+            }
+        }
+    }
+
+    private static class PendingName {
+
+        private final String playerName;
+        private final CompletableFuture<Optional<UUID>> future = new CompletableFuture<>();
+
+        PendingName(String playerName) {
+            this.playerName = playerName;
+        }
+    }
+}
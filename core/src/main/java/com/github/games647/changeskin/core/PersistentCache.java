@@ -0,0 +1,145 @@
+package com.github.games647.changeskin.core;
+
+import com.google.common.collect.ForwardingConcurrentMap;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Expiring cache that remembers its writes, so they could be persisted in the background. Entries restored from
+ * the database keep their original expiration instead of starting a new lifetime.
+ *
+ * @param <K> cache key
+ * @param <V> cache value
+ */
+public class PersistentCache<K, V> extends ForwardingConcurrentMap<K, V> {
+
+    private final ConcurrentMap<K, V> delegate;
+    private final Duration expireAfterWrite;
+
+    //key -> expiration timestamp in millis
+    private final Map<K, Long> dirty = new ConcurrentHashMap<>();
+    private final Map<K, Long> restored = new ConcurrentHashMap<>();
+
+    public PersistentCache(Duration expireAfterWrite, int maxSize) {
+        this.delegate = CommonUtil.buildCache((int) expireAfterWrite.getSeconds(), maxSize);
+        this.expireAfterWrite = expireAfterWrite;
+    }
+
+    @Override
+    protected ConcurrentMap<K, V> delegate() {
+        return delegate;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        restored.remove(key);
+        dirty.put(key, Instant.now().plus(expireAfterWrite).toEpochMilli());
+        return delegate.put(key, value);
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        V previous = delegate.putIfAbsent(key, value);
+        if (previous == null) {
+            restored.remove(key);
+            dirty.put(key, Instant.now().plus(expireAfterWrite).toEpochMilli());
+        }
+
+        return previous;
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> map) {
+        standardPutAll(map);
+    }
+
+    /**
+     * Adds a persisted entry without marking it as changed.
+     *
+     * @param key cache key
+     * @param value cache value
+     * @param expiresAt expiration timestamp in millis
+     */
+    public void restore(K key, V value, long expiresAt) {
+        if (expiresAt > System.currentTimeMillis()) {
+            delegate.put(key, value);
+            restored.put(key, expiresAt);
+        }
+    }
+
+    /**
+     * Removes restored entries that reached their original expiration.
+     */
+    public void sweep() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<K, Long>> iterator = restored.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<K, Long> entry = iterator.next();
+            if (entry.getValue() <= now) {
+                iterator.remove();
+                delegate.remove(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * @return entries written since the last call that are still present
+     */
+    public List<Entry<K, V>> drainChanges() {
+        List<Entry<K, V>> changes = new ArrayList<>(dirty.size());
+        for (Map.Entry<K, Long> change : dirty.entrySet()) {
+            //keep the change if it was overwritten concurrently
+            if (!dirty.remove(change.getKey(), change.getValue())) {
+                continue;
+            }
+
+            V value = delegate.get(change.getKey());
+            if (value != null) {
+                changes.add(new Entry<>(change.getKey(), value, change.getValue()));
+            }
+        }
+
+        return changes;
+    }
+
+    public static class Entry<K, V> {
+
+        private final K key;
+        private final V value;
+        private final long expiresAt;
+
+        public Entry(K key, V value, long expiresAt) {
+            this.key = key;
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        public V getValue() {
+            return value;
+        }
+
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+
+        @Override
+        public String toString() {
+            return this.getClass().getSimpleName() + '{' +
+                    "key=" + key +
+                    ", value=" + value +
+                    ", expiresAt=" + expiresAt +
+                    '}';
+        }
+    }
+}
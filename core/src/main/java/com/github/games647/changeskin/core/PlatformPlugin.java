@@ -1,6 +1,9 @@
 package com.github.games647.changeskin.core;
 
+import com.github.games647.changeskin.core.model.skin.SkinModel;
+
 import java.nio.file.Path;
+import java.util.Collection;
 import java.util.UUID;
 import java.util.concurrent.ThreadFactory;
 
@@ -21,4 +24,17 @@ public interface PlatformPlugin<C> {
     }
 
     boolean hasSkinPermission(C invoker, UUID uuid, boolean sendMessage);
+
+    /**
+     * @return unique ids of all online players. Called from background threads.
+     */
+    Collection<UUID> getOnlinePlayers();
+
+    /**
+     * Saves and applies an automatically updated skin if the player is still online. Called from background threads.
+     *
+     * @param playerId online player
+     * @param targetSkin new skin
+     */
+    void applySkin(UUID playerId, SkinModel targetSkin);
 }
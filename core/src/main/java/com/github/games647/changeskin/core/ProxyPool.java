@@ -0,0 +1,212 @@
+package com.github.games647.changeskin.core;
+
+import java.net.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Proxies with their own rate limit per endpoint, a latency estimate and a circuit breaker. Requests go to the
+ * available proxy with the most remaining permits relative to its latency, so every proxy adds its full limit to
+ * the capacity. A proxy that failed repeatedly is skipped until its break time ends. Afterwards a single trial
+ * request decides if it's used again.
+ */
+public class ProxyPool {
+
+    //consecutive connection failures until the proxy is skipped
+    private static final int FAILURE_THRESHOLD = 3;
+    private static final Duration MIN_BREAK = Duration.ofSeconds(30);
+    private static final Duration MAX_BREAK = Duration.ofMinutes(10);
+
+    //weight of the newest sample in the moving latency average
+    private static final double LATENCY_ALPHA = 0.2;
+    //latency that halves the score of a proxy
+    private static final double LATENCY_SCALE_MILLIS = 250;
+
+    private final List<Node> nodes;
+
+    public ProxyPool(Collection<Proxy> proxies, Duration window, int maximumRequests) {
+        List<Node> builder = new ArrayList<>(proxies.size());
+        for (Proxy proxy : proxies) {
+            builder.add(new Node(proxy, new RateLimitBuckets(window, maximumRequests)));
+        }
+
+        this.nodes = Collections.unmodifiableList(builder);
+    }
+
+    /**
+     * Acquires a permit of the given endpoint from the best available proxy.
+     *
+     * @param bucket endpoint name
+     * @return the proxy holding the permit or empty if every proxy is exhausted or broken
+     */
+    public Optional<Node> acquire(String bucket) {
+        if (nodes.isEmpty()) {
+            return Optional.empty();
+        }
+
+        long now = System.nanoTime();
+        List<Node> candidates = new ArrayList<>(nodes.size());
+        Map<Node, Double> scores = new HashMap<>(nodes.size());
+        for (Node node : nodes) {
+            if (node.isClosed() || node.isTrialAllowed(now)) {
+                candidates.add(node);
+                scores.put(node, node.getScore(bucket));
+            }
+        }
+
+        candidates.sort(Comparator.comparingDouble(scores::get).reversed());
+        for (Node node : candidates) {
+            //another request could have taken the last permit or the trial in the meanwhile
+            if (node.tryAcquire(bucket, now)) {
+                return Optional.of(node);
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    public boolean isEmpty() {
+        return nodes.isEmpty();
+    }
+
+    public List<Node> getNodes() {
+        return nodes;
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + '{' +
+                "nodes=" + nodes +
+                '}';
+    }
+
+    public static class Node {
+
+        private final Proxy proxy;
+        private final RateLimitBuckets limits;
+
+        //moving average as double bits - negative until the first sample
+        private final AtomicLong latencyBits = new AtomicLong(Double.doubleToLongBits(-1));
+
+        private final AtomicInteger failures = new AtomicInteger();
+        private final AtomicLong brokenUntil = new AtomicLong(System.nanoTime());
+        private final AtomicBoolean trialRunning = new AtomicBoolean();
+
+        public Node(Proxy proxy, RateLimitBuckets limits) {
+            this.proxy = proxy;
+            this.limits = limits;
+        }
+
+        public Proxy getProxy() {
+            return proxy;
+        }
+
+        public RateLimitBuckets getLimits() {
+            return limits;
+        }
+
+        /**
+         * @return average latency in millis or a negative value if nothing is measured yet
+         */
+        public double getLatency() {
+            return Double.longBitsToDouble(latencyBits.get());
+        }
+
+        public boolean isBroken() {
+            return failures.get() >= FAILURE_THRESHOLD;
+        }
+
+        public void onSuccess(String bucket, Duration latency) {
+            double sample = latency.toNanos() / 1_000_000D;
+            latencyBits.getAndUpdate(bits -> {
+                double current = Double.longBitsToDouble(bits);
+                double next = current < 0 ? sample : current + LATENCY_ALPHA * (sample - current);
+                return Double.doubleToLongBits(next);
+            });
+
+            limits.getBucket(bucket).onSuccess();
+            failures.set(0);
+            trialRunning.set(false);
+        }
+
+        public Duration onRateLimited(String bucket, Duration retryAfter) {
+            //the proxy works, but it's exhausted for this endpoint
+            failures.set(0);
+            trialRunning.set(false);
+            return limits.getBucket(bucket).onRateLimited(retryAfter);
+        }
+
+        /**
+         * Records a failed connection. The breaker opens after multiple failures in a row and stays open for a
+         * growing time while the trial requests fail too.
+         */
+        public void onFailure() {
+            int failed = failures.incrementAndGet();
+            if (failed >= FAILURE_THRESHOLD) {
+                long breakMillis = MIN_BREAK.toMillis() << Math.min(failed - FAILURE_THRESHOLD, 16);
+                breakMillis = Math.min(breakMillis, MAX_BREAK.toMillis());
+                brokenUntil.set(System.nanoTime() + Duration.ofMillis(breakMillis).toNanos());
+            }
+
+            trialRunning.set(false);
+        }
+
+        private boolean isClosed() {
+            return !isBroken();
+        }
+
+        private boolean isTrialAllowed(long now) {
+            return now - brokenUntil.get() >= 0 && !trialRunning.get();
+        }
+
+        private boolean tryAcquire(String bucket, long now) {
+            if (isClosed()) {
+                return limits.tryAcquire(bucket);
+            }
+
+            //half open: only a single request checks if the proxy recovered
+            if (isTrialAllowed(now) && trialRunning.compareAndSet(false, true)) {
+                if (limits.tryAcquire(bucket)) {
+                    return true;
+                }
+
+                trialRunning.set(false);
+            }
+
+            return false;
+        }
+
+        private double getScore(String bucket) {
+            AdaptiveRateLimiter limiter = limits.getBucket(bucket);
+            if (limiter.isBlocked() || limiter.getMaximumRequests() <= 0) {
+                return 0;
+            }
+
+            double headroom = (double) limiter.getAvailablePermits() / limiter.getMaximumRequests();
+
+            //unmeasured proxies are treated as fast, so they get a sample early
+            double latency = Math.max(getLatency(), 0);
+            return headroom / (1 + latency / LATENCY_SCALE_MILLIS);
+        }
+
+        @Override
+        public String toString() {
+            return this.getClass().getSimpleName() + '{' +
+                    "proxy=" + proxy +
+                    ", latency=" + getLatency() +
+                    ", failures=" + failures +
+                    ", limits=" + limits +
+                    '}';
+        }
+    }
+}
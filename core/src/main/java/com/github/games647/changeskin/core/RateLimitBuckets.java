@@ -0,0 +1,56 @@
+package com.github.games647.changeskin.core;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Independent rate limits identified by a name like the endpoint host or the proxy address. Unknown buckets are
+ * created on first use with the default limit.
+ */
+public class RateLimitBuckets {
+
+    private final Map<String, AdaptiveRateLimiter> buckets = new ConcurrentHashMap<>();
+
+    private final Duration defaultWindow;
+    private final int defaultMaximum;
+
+    public RateLimitBuckets(Duration defaultWindow, int defaultMaximum) {
+        this.defaultWindow = defaultWindow;
+        this.defaultMaximum = defaultMaximum;
+    }
+
+    /**
+     * Replaces the bucket with a new limit.
+     *
+     * @param name bucket name
+     * @param window sliding window
+     * @param maximumRequests requests allowed within the window
+     * @return the new bucket
+     */
+    public AdaptiveRateLimiter register(String name, Duration window, int maximumRequests) {
+        AdaptiveRateLimiter limiter = new AdaptiveRateLimiter(window, maximumRequests);
+        buckets.put(name, limiter);
+        return limiter;
+    }
+
+    public AdaptiveRateLimiter getBucket(String name) {
+        return buckets.computeIfAbsent(name, key -> new AdaptiveRateLimiter(defaultWindow, defaultMaximum));
+    }
+
+    public boolean tryAcquire(String name) {
+        return getBucket(name).tryAcquire();
+    }
+
+    public Map<String, AdaptiveRateLimiter> getBuckets() {
+        return Collections.unmodifiableMap(buckets);
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + '{' +
+                "buckets=" + buckets +
+                '}';
+    }
+}
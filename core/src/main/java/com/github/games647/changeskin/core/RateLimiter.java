@@ -1,46 +1,112 @@
 package com.github.games647.changeskin.core;
 
 import java.time.Duration;
-import java.time.Instant;
-import java.util.Deque;
-import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
+/**
+ * Sliding window limiter. The timestamps of the last acquisitions are kept in a ring buffer of primitive nano time
+ * stamps. A permit is only available if the slot that would be overwritten next is older than the window.
+ * Acquisitions claim their slots with a compare and set on the head, so there is no lock.
+ */
 public class RateLimiter  {
 
+    //marker for slots that were never used
+    private static final long EMPTY = Long.MIN_VALUE;
+
     private final Duration expireDuration;
     private final int maximumRequests;
 
-    private final Deque<Instant> requests = new LinkedList<>();
+    private final long windowNanos;
+    private final AtomicLongArray stamps;
+
+    //total number of acquisitions - the next slot is head % maximumRequests
+    private final AtomicLong head = new AtomicLong();
 
     public RateLimiter(Duration expireDuration, int maximumRequests) {
         this.expireDuration = expireDuration;
         this.maximumRequests = maximumRequests;
+
+        this.windowNanos = expireDuration.toNanos();
+        this.stamps = new AtomicLongArray(Math.max(maximumRequests, 0));
+        for (int i = 0; i < stamps.length(); i++) {
+            stamps.set(i, EMPTY);
+        }
     }
 
     public boolean tryAcquire() {
-        if (maximumRequests <= 0) {
+        return tryAcquire(1);
+    }
+
+    /**
+     * Acquires multiple permits at once, for example for a request that counts more than once.
+     *
+     * @param permits number of permits
+     * @return true if all permits are acquired, false if none are
+     */
+    public boolean tryAcquire(int permits) {
+        if (permits <= 0) {
+            return true;
+        }
+
+        if (permits > maximumRequests) {
             return false;
         }
 
-        Instant now = Instant.now();
-        synchronized (requests) {
-            //fill the deque first
-            if (requests.size() < maximumRequests) {
-                requests.push(now);
-                return true;
+        long now = System.nanoTime();
+        while (true) {
+            long currentHead = head.get();
+            for (int i = 0; i < permits; i++) {
+                if (!isExpired(stamps.get(slot(currentHead + i)), now)) {
+                    return false;
+                }
             }
 
-            //check oldest entry if it's expired
-            Instant oldest = requests.getLast();
-            if (Duration.between(oldest, now).compareTo(expireDuration) >= 0) {
-                //remove oldest (tail) entry and add newest to the head
-                requests.removeLast();
-                requests.push(now);
+            if (head.compareAndSet(currentHead, currentHead + permits)) {
+                for (int i = 0; i < permits; i++) {
+                    stamps.set(slot(currentHead + i), now);
+                }
+
                 return true;
             }
         }
+    }
+
+    /**
+     * @return how long it takes until the next permit is available. Zero if one is available now.
+     */
+    public Duration getTimeUntilNextPermit() {
+        if (maximumRequests <= 0) {
+            return expireDuration;
+        }
 
-        return false;
+        long now = System.nanoTime();
+        long oldest = stamps.get(slot(head.get()));
+        if (isExpired(oldest, now)) {
+            return Duration.ZERO;
+        }
+
+        return Duration.ofNanos(windowNanos - (now - oldest));
+    }
+
+    /**
+     * @return number of permits that could be acquired right now
+     */
+    public int getAvailablePermits() {
+        if (maximumRequests <= 0) {
+            return 0;
+        }
+
+        long now = System.nanoTime();
+        long currentHead = head.get();
+
+        //the slots are ordered from the oldest to the newest acquisition
+        int available = 0;
+        while (available < maximumRequests && isExpired(stamps.get(slot(currentHead + available)), now)) {
+            available++;
+        }
+
+        return available;
     }
 
     public Duration getExpireDuration() {
@@ -50,4 +116,22 @@ public class RateLimiter  {
     public int getMaximumRequests() {
         return maximumRequests;
     }
+
+    private int slot(long index) {
+        return (int) (index % maximumRequests);
+    }
+
+    private boolean isExpired(long stamp, long now) {
+        //compare the difference, because nano time could overflow
+        return stamp == EMPTY || now - stamp >= windowNanos;
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + '{' +
+                "expireDuration=" + expireDuration +
+                ", maximumRequests=" + maximumRequests +
+                ", availablePermits=" + getAvailablePermits() +
+                '}';
+    }
 }
@@ -0,0 +1,111 @@
+package com.github.games647.changeskin.core;
+
+import com.github.games647.changeskin.core.model.UserPreference;
+import com.google.common.collect.Lists;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+
+/**
+ * Write-behind pipeline for preferences and their target skins. Repeated saves of the same player are coalesced
+ * into a single pending entry and written as one JDBC batch either if enough players are pending or the flush
+ * interval elapsed. The executor should be exclusive to this queue, because a flush blocks on the database.
+ */
+public class SaveQueue {
+
+    private final Logger logger;
+    private final SkinStorage storage;
+    private final ScheduledExecutorService executor;
+
+    private final int batchSize;
+    private final ScheduledFuture<?> flushTask;
+
+    private final Map<UUID, UserPreference> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    public SaveQueue(Logger logger, SkinStorage storage, ScheduledExecutorService executor
+            , int batchSize, Duration flushInterval) {
+        this.logger = logger;
+        this.storage = storage;
+        this.executor = executor;
+        this.batchSize = Math.max(batchSize, 1);
+
+        long intervalMillis = Math.max(flushInterval.toMillis(), 1);
+        this.flushTask = executor.scheduleWithFixedDelay(this::flush, intervalMillis, intervalMillis
+                , TimeUnit.MILLISECONDS);
+    }
+
+    public void enqueue(UserPreference preference) {
+        //write-behind: readers get the pending state from the cache or this queue while the database catches up
+        storage.getCache().putPreferences(preference);
+
+        //replaces an older pending save of the same player, because only the newest state is relevant
+        pending.put(preference.getUuid(), preference);
+        if (pending.size() >= batchSize && flushScheduled.compareAndSet(false, true)) {
+            executor.execute(this::flush);
+        }
+    }
+
+    /**
+     * @param uuid player id
+     * @return the newest state of the player that is not saved yet or null
+     */
+    public UserPreference getPending(UUID uuid) {
+        return pending.get(uuid);
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Writes the entries that are pending at the start in batches of the configured size. Entries enqueued during
+     * the flush are left for the next run, so a steady stream of saves cannot keep the thread busy forever. Entries
+     * stay pending until their batch is saved, so readers could find them until they are in the database.
+     */
+    public synchronized void flush() {
+        flushScheduled.set(false);
+
+        List<UserPreference> snapshot = new ArrayList<>(pending.values());
+        for (List<UserPreference> batch : Lists.partition(snapshot, batchSize)) {
+            if (!save(batch)) {
+                //retry with the next run instead of hammering an unavailable database
+                return;
+            }
+
+            //only remove this state - a newer one enqueued in the meantime stays pending
+            batch.forEach(preference -> pending.remove(preference.getUuid(), preference));
+        }
+
+        if (pending.size() >= batchSize && flushScheduled.compareAndSet(false, true)) {
+            executor.execute(this::flush);
+        }
+    }
+
+    private boolean save(List<UserPreference> batch) {
+        try {
+            return storage.save(batch);
+        } catch (RuntimeException ex) {
+            logger.error("Failed to save batch of {} preferences", batch.size(), ex);
+            return false;
+        }
+    }
+
+    /**
+     * Stops the periodic flushing and writes the remaining entries on the calling thread.
+     */
+    public void close() {
+        flushTask.cancel(false);
+        flush();
+    }
+}
@@ -0,0 +1,477 @@
+package com.github.games647.changeskin.core;
+
+import com.github.games647.changeskin.core.model.UUIDTypeAdapter;
+import com.google.common.collect.ImmutableList;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+
+/**
+ * Brings the database schema to the newest version. Every migration script runs at most once and is recorded in the
+ * version table together with its description, so already applied steps are skipped on the next start.
+ */
+public class SchemaMigrator {
+
+    private static final String VERSION_TABLE = "schema_version";
+
+    private static final List<Migration> MIGRATIONS = ImmutableList.of(
+            new Migration(1, "create tables", "/migrations/V1__create_tables.sql"),
+            new Migration(2, "skin lookup indexes", "/migrations/V2__skin_lookup_indexes.sql"),
+            new Migration(3, "skin texture hash", "/migrations/V3__skin_texture_hash.sql"),
+            new Migration(4, "profile cache", "/migrations/V4__profile_cache.sql"),
+            new Migration(5, "skin encoded value", "/migrations/V5__skin_encoded_value.sql")
+    );
+
+    //parent table first, because the preferences reference the skins
+    private static final String[] UUID_TABLES = {"skinData", "preferences"};
+    private static final String[] PRIMARY_KEYS = {"SkinID", "UserID"};
+
+    private static final String TEMP_SUFFIX = "_bin";
+    private static final String OLD_SUFFIX = "_char";
+
+    private static final int COPY_CHUNK_SIZE = 500;
+
+    //statements of the migration scripts that can't be guarded with IF NOT EXISTS in MySQL
+    private static final Pattern CREATE_INDEX = Pattern.compile("^CREATE INDEX `(\\w+)` ON `(\\w+)`");
+    private static final Pattern ADD_COLUMN = Pattern.compile("^ALTER TABLE `(\\w+)` ADD COLUMN `(\\w+)`");
+
+    private final Logger logger;
+    private final DataSource dataSource;
+    private final boolean sqlite;
+
+    public SchemaMigrator(Logger logger, DataSource dataSource, boolean sqlite) {
+        this.logger = logger;
+        this.dataSource = dataSource;
+        this.sqlite = sqlite;
+    }
+
+    /**
+     * Applies all pending migrations in the order of their version.
+     *
+     * @throws SQLException if a migration failed. Already applied migrations stay recorded.
+     */
+    public void migrate() throws SQLException {
+        try (Connection con = dataSource.getConnection()) {
+            try (Statement stmt = con.createStatement()) {
+                stmt.executeUpdate("CREATE TABLE IF NOT EXISTS `" + VERSION_TABLE + "` ("
+                        + "`Version` INTEGER PRIMARY KEY, "
+                        + "`Description` VARCHAR(255) NOT NULL, "
+                        + "`AppliedAt` BIGINT NOT NULL)");
+            }
+
+            finishConversion(con);
+
+            Set<Integer> applied = getAppliedVersions(con);
+            for (Migration migration : MIGRATIONS) {
+                if (!applied.contains(migration.version)) {
+                    apply(con, migration);
+                }
+            }
+        }
+    }
+
+    private Set<Integer> getAppliedVersions(Connection con) throws SQLException {
+        Set<Integer> versions = new HashSet<>();
+        try (Statement stmt = con.createStatement();
+             ResultSet resultSet = stmt.executeQuery("SELECT `Version` FROM `" + VERSION_TABLE + '`')) {
+            while (resultSet.next()) {
+                versions.add(resultSet.getInt(1));
+            }
+        }
+
+        return versions;
+    }
+
+    private void apply(Connection con, Migration migration) throws SQLException {
+        logger.info("Migrating database to version {} ({})", migration.version, migration.description);
+
+        List<String> statements;
+        try {
+            statements = readScript(migration.script);
+        } catch (IOException ioEx) {
+            throw new SQLException("Failed to load migration file " + migration.script, ioEx);
+        }
+
+        //MySQL commits schema changes implicitly, but SQLite rolls back a half applied migration
+        boolean autoCommit = con.getAutoCommit();
+        con.setAutoCommit(false);
+        try (Statement stmt = con.createStatement();
+             PreparedStatement versionStmt = con.prepareStatement("INSERT INTO `" + VERSION_TABLE
+                     + "` (`Version`, `Description`, `AppliedAt`) VALUES (?, ?, ?)")) {
+            for (String sql : statements) {
+                //left over by a failed run on MySQL, because the schema changes before the failure are committed
+                if (!isApplied(con, sql)) {
+                    stmt.executeUpdate(sql);
+                }
+            }
+
+            versionStmt.setInt(1, migration.version);
+            versionStmt.setString(2, migration.description);
+            versionStmt.setLong(3, Instant.now().toEpochMilli());
+            versionStmt.executeUpdate();
+            con.commit();
+        } catch (SQLException sqlEx) {
+            con.rollback();
+            throw sqlEx;
+        } finally {
+            con.setAutoCommit(autoCommit);
+        }
+    }
+
+    private boolean isApplied(Connection con, String sql) throws SQLException {
+        Matcher indexMatcher = CREATE_INDEX.matcher(sql);
+        if (indexMatcher.find()) {
+            DatabaseMetaData metaData = con.getMetaData();
+            try (ResultSet indexes = metaData.getIndexInfo(con.getCatalog(), null, indexMatcher.group(2), false
+                    , true)) {
+                return containsName(indexes, "INDEX_NAME", indexMatcher.group(1));
+            }
+        }
+
+        Matcher columnMatcher = ADD_COLUMN.matcher(sql);
+        if (columnMatcher.find()) {
+            DatabaseMetaData metaData = con.getMetaData();
+            try (ResultSet columns = metaData.getColumns(con.getCatalog(), null, columnMatcher.group(1), null)) {
+                return containsName(columns, "COLUMN_NAME", columnMatcher.group(2));
+            }
+        }
+
+        //tables are created with IF NOT EXISTS
+        return false;
+    }
+
+    private boolean tableExists(Connection con, String table) throws SQLException {
+        try (ResultSet tables = con.getMetaData().getTables(con.getCatalog(), null, null, new String[]{"TABLE"})) {
+            return containsName(tables, "TABLE_NAME", table);
+        }
+    }
+
+    private boolean containsName(ResultSet resultSet, String column, String name) throws SQLException {
+        while (resultSet.next()) {
+            if (name.equalsIgnoreCase(resultSet.getString(column))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private List<String> readScript(String path) throws IOException {
+        InputStream in = getClass().getResourceAsStream(path);
+        if (in == null) {
+            throw new IOException("Missing resource " + path);
+        }
+
+        List<String> statements = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            StringBuilder builder = new StringBuilder();
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("#") || line.startsWith("-- ")) continue;
+
+                builder.append(line);
+                if (line.endsWith(";")) {
+                    String sql = builder.toString();
+                    if (sqlite) {
+                        sql = sql.replace("AUTO_INCREMENT", "AUTOINCREMENT");
+                    }
+
+                    statements.add(sql);
+                    builder = new StringBuilder();
+                }
+            }
+        }
+
+        return statements;
+    }
+
+    /**
+     * @return true if the player ids are stored as 16 raw bytes instead of their hex representation
+     * @throws SQLException on database errors
+     */
+    public boolean isBinaryLayout() throws SQLException {
+        try (Connection con = dataSource.getConnection();
+             Statement stmt = con.createStatement();
+             ResultSet resultSet = stmt.executeQuery("SELECT `UUID` FROM `skinData` LIMIT 0")) {
+            //MySQL reports BINARY and SQLite the declared type BINARY(16)
+            String typeName = resultSet.getMetaData().getColumnTypeName(1);
+            return typeName != null && typeName.toUpperCase().contains("BINARY");
+        }
+    }
+
+    /**
+     * Converts the UUID columns of both tables to BINARY(16). Other servers sharing this database can't write to the
+     * tables during the conversion, so no change gets lost. SQLite holds its write lock for the whole conversion and
+     * MySQL renames the tables away before they are copied. Queries of other servers fail until the converted tables
+     * are in place.
+     *
+     * @throws SQLException on database errors. An interrupted MySQL conversion is resumed on the next start.
+     */
+    public void convertToBinaryUUID() throws SQLException {
+        logger.info("Converting UUID columns to binary. This could take a while on large databases");
+
+        try (Connection con = dataSource.getConnection()) {
+            if (sqlite) {
+                convertSQLite(con);
+            } else {
+                //the rename is atomic and blocks all writes of other servers to the text tables
+                renameTables(con, "", OLD_SUFFIX);
+                copyRenamedTables(con);
+            }
+        }
+
+        logger.info("Converted UUID columns to binary");
+    }
+
+    private void convertSQLite(Connection con) throws SQLException {
+        //SQLite schema changes are transactional, so the conversion is applied completely or not at all
+        boolean autoCommit = con.getAutoCommit();
+        con.setAutoCommit(false);
+        try (Statement stmt = con.createStatement()) {
+            List<String> indexes = new ArrayList<>();
+            for (String table : UUID_TABLES) {
+                createBinaryTable(con, table, table);
+                indexes.addAll(getSQLiteIndexes(con, table));
+            }
+
+            for (int i = 0; i < UUID_TABLES.length; i++) {
+                copyRows(con, UUID_TABLES[i], UUID_TABLES[i] + TEMP_SUFFIX, PRIMARY_KEYS[i]);
+            }
+
+            //since SQLite 3.26 the foreign key references follow the renamed tables
+            renameTables(con, "", OLD_SUFFIX);
+            renameTables(con, TEMP_SUFFIX, "");
+            dropTables(con, OLD_SUFFIX);
+
+            //SQLite index names are unique per database, so they could only be recreated after the drop
+            for (String index : indexes) {
+                stmt.executeUpdate(index);
+            }
+
+            con.commit();
+        } catch (SQLException sqlEx) {
+            con.rollback();
+            throw sqlEx;
+        } finally {
+            con.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Copies the MySQL tables renamed by the conversion to their binary variants and moves those in place.
+     */
+    private void copyRenamedTables(Connection con) throws SQLException {
+        //leftovers of an interrupted copy
+        dropTables(con, TEMP_SUFFIX);
+        for (String table : UUID_TABLES) {
+            createBinaryTable(con, table, table + OLD_SUFFIX);
+        }
+
+        for (int i = 0; i < UUID_TABLES.length; i++) {
+            copyRows(con, UUID_TABLES[i] + OLD_SUFFIX, UUID_TABLES[i] + TEMP_SUFFIX, PRIMARY_KEYS[i]);
+        }
+
+        renameTables(con, TEMP_SUFFIX, "");
+        dropTables(con, OLD_SUFFIX);
+    }
+
+    /**
+     * Resumes a MySQL conversion that was interrupted after the tables were renamed away. Schema changes are
+     * committed immediately there, so the server could have stopped in between.
+     */
+    private void finishConversion(Connection con) throws SQLException {
+        if (sqlite || !tableExists(con, UUID_TABLES[0] + OLD_SUFFIX)) {
+            return;
+        }
+
+        if (tableExists(con, UUID_TABLES[0])) {
+            //only the old tables weren't dropped
+            dropTables(con, OLD_SUFFIX);
+        } else {
+            logger.warn("Resuming the interrupted conversion of the UUID columns to binary");
+            copyRenamedTables(con);
+            logger.info("Converted UUID columns to binary");
+        }
+    }
+
+    private void createBinaryTable(Connection con, String table, String source) throws SQLException {
+        String tempTable = table + TEMP_SUFFIX;
+        try (Statement stmt = con.createStatement()) {
+            if (sqlite) {
+                String definition = null;
+                try (PreparedStatement tableStmt = con.prepareStatement("SELECT `sql` FROM `sqlite_master`"
+                        + " WHERE `type`='table' AND `name`=?")) {
+                    tableStmt.setString(1, source);
+                    try (ResultSet resultSet = tableStmt.executeQuery()) {
+                        if (resultSet.next()) {
+                            definition = resultSet.getString(1);
+                        }
+                    }
+                }
+
+                if (definition == null) {
+                    throw new SQLException("Missing table " + source);
+                }
+
+                //copy of the current definition including columns added by later migrations
+                definition = definition.replaceFirst("(?i)^CREATE TABLE\\s+(IF NOT EXISTS\\s+)?[`\"]?"
+                        + source + "[`\"]?", "CREATE TABLE `" + tempTable + '`');
+                definition = definition.replaceFirst("(?i)([`\"]?UUID[`\"]?\\s+)CHAR\\(36\\)", "$1BINARY(16)");
+                for (String parent : UUID_TABLES) {
+                    definition = definition.replaceAll("(?i)REFERENCES\\s+[`\"]?" + parent + "[`\"]?",
+                            "REFERENCES `" + parent + TEMP_SUFFIX + '`');
+                }
+
+                stmt.executeUpdate(definition);
+            } else {
+                //copies the columns and indexes, but not the foreign keys
+                stmt.executeUpdate("CREATE TABLE `" + tempTable + "` LIKE `" + source + '`');
+                stmt.executeUpdate("ALTER TABLE `" + tempTable + "` MODIFY `UUID` BINARY(16) NOT NULL");
+                if ("preferences".equals(table)) {
+                    stmt.executeUpdate("ALTER TABLE `" + tempTable + "` ADD FOREIGN KEY (`TargetSkin`)"
+                            + " REFERENCES `skinData" + TEMP_SUFFIX + "` (`SkinID`) ON DELETE CASCADE");
+                }
+            }
+        }
+    }
+
+    private List<String> getSQLiteIndexes(Connection con, String table) throws SQLException {
+        List<String> indexes = new ArrayList<>();
+
+        //implicit indexes like the one of UNIQUE have no statement and are part of the table definition
+        try (PreparedStatement stmt = con.prepareStatement("SELECT `sql` FROM `sqlite_master`"
+                + " WHERE `type`='index' AND `tbl_name`=? AND `sql` IS NOT NULL")) {
+            stmt.setString(1, table);
+            try (ResultSet resultSet = stmt.executeQuery()) {
+                while (resultSet.next()) {
+                    indexes.add(resultSet.getString(1));
+                }
+            }
+        }
+
+        return indexes;
+    }
+
+    /**
+     * Copies all rows in chunks of a single batch ordered by their primary key.
+     */
+    private void copyRows(Connection con, String table, String targetTable, String primaryKey) throws SQLException {
+        int lastId = 0;
+        while (true) {
+            int copied = 0;
+            try (PreparedStatement selectStmt = con.prepareStatement("SELECT * FROM `" + table + '`'
+                    + " WHERE `" + primaryKey + "`>? ORDER BY `" + primaryKey + "` LIMIT " + COPY_CHUNK_SIZE)) {
+                selectStmt.setInt(1, lastId);
+
+                try (ResultSet resultSet = selectStmt.executeQuery()) {
+                    ResultSetMetaData metaData = resultSet.getMetaData();
+                    int columns = metaData.getColumnCount();
+
+                    List<String> columnNames = new ArrayList<>(columns);
+                    for (int column = 1; column <= columns; column++) {
+                        columnNames.add('`' + metaData.getColumnName(column) + '`');
+                    }
+
+                    String placeholders = String.join(", ", Collections.nCopies(columns, "?"));
+                    try (PreparedStatement insertStmt = con.prepareStatement("INSERT INTO `" + targetTable
+                            + "` (" + String.join(", ", columnNames) + ") VALUES (" + placeholders + ')')) {
+                        while (resultSet.next()) {
+                            for (int column = 1; column <= columns; column++) {
+                                String name = metaData.getColumnName(column);
+                                if ("UUID".equalsIgnoreCase(name)) {
+                                    UUID uuid = UUIDTypeAdapter.parseId(resultSet.getString(column));
+                                    insertStmt.setBytes(column, UUIDTypeAdapter.toBytes(uuid));
+                                } else {
+                                    insertStmt.setObject(column, resultSet.getObject(column));
+                                }
+
+                                if (primaryKey.equalsIgnoreCase(name)) {
+                                    lastId = resultSet.getInt(column);
+                                }
+                            }
+
+                            insertStmt.addBatch();
+                            copied++;
+                        }
+
+                        if (copied > 0) {
+                            insertStmt.executeBatch();
+                        }
+                    }
+                }
+            }
+
+            if (copied < COPY_CHUNK_SIZE) {
+                return;
+            }
+        }
+    }
+
+    private void renameTables(Connection con, String fromSuffix, String toSuffix) throws SQLException {
+        try (Statement stmt = con.createStatement()) {
+            if (sqlite) {
+                for (String table : UUID_TABLES) {
+                    stmt.executeUpdate("ALTER TABLE `" + table + fromSuffix + "` RENAME TO `" + table + toSuffix + '`');
+                }
+            } else {
+                //single atomic rename
+                List<String> renames = new ArrayList<>();
+                for (String table : UUID_TABLES) {
+                    renames.add('`' + table + fromSuffix + "` TO `" + table + toSuffix + '`');
+                }
+
+                stmt.executeUpdate("RENAME TABLE " + String.join(", ", renames));
+            }
+        }
+    }
+
+    private void dropTables(Connection con, String suffix) throws SQLException {
+        //children first because of the foreign key
+        for (int i = UUID_TABLES.length - 1; i >= 0; i--) {
+            dropTable(con, UUID_TABLES[i] + suffix);
+        }
+    }
+
+    private void dropTable(Connection con, String table) throws SQLException {
+        try (Statement stmt = con.createStatement()) {
+            stmt.executeUpdate("DROP TABLE IF EXISTS `" + table + '`');
+        }
+    }
+
+    private static class Migration {
+
+        private final int version;
+        private final String description;
+        private final String script;
+
+        Migration(int version, String description, String script) {
+            this.version = version;
+            this.description = description;
+            this.script = script;
+        }
+    }
+}
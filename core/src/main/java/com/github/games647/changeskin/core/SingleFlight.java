@@ -0,0 +1,121 @@
+package com.github.games647.changeskin.core;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Deduplicates concurrent calls for the same key. Only the first caller runs the loader and all others that arrive
+ * while it's in flight share its result.
+ *
+ * @param <K> request key
+ * @param <V> result
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final Executor executor;
+    private final Duration maxWait;
+
+    /**
+     * @param executor executor for the asynchronous calls
+     * @param maxWait maximum time a blocking caller waits for a shared call before it runs the loader itself. This
+     *                prevents starvation if the shared call is still queued on a saturated executor.
+     */
+    public SingleFlight(Executor executor, Duration maxWait) {
+        this.executor = executor;
+        this.maxWait = maxWait;
+    }
+
+    /**
+     * Runs the loader on the calling thread or waits for the call that is already in flight.
+     *
+     * @param key request key
+     * @param loader request
+     * @return the shared result
+     * @throws Exception the exception thrown by the loader
+     */
+    public V get(K key, Callable<V> loader) throws Exception {
+        CompletableFuture<V> created = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            try {
+                return existing.get(maxWait.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (ExecutionException executionEx) {
+                throw unwrap(executionEx.getCause());
+            } catch (TimeoutException timeoutEx) {
+                return loader.call();
+            }
+        }
+
+        load(key, created, loader);
+        try {
+            return created.join();
+        } catch (CompletionException completionEx) {
+            throw unwrap(completionEx.getCause());
+        }
+    }
+
+    /**
+     * Schedules the loader on the executor or returns the call that is already in flight.
+     *
+     * @param key request key
+     * @param loader request
+     * @return the shared result. Exceptions of the loader complete it exceptionally.
+     */
+    public CompletableFuture<V> getAsync(K key, Callable<V> loader) {
+        CompletableFuture<V> created = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            return existing;
+        }
+
+        try {
+            executor.execute(() -> load(key, created, loader));
+        } catch (RuntimeException rejectedEx) {
+            inFlight.remove(key, created);
+            created.completeExceptionally(rejectedEx);
+        }
+
+        return created;
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    private void load(K key, CompletableFuture<V> future, Callable<V> loader) {
+        V result;
+        try {
+            result = loader.call();
+        } catch (Throwable throwable) {
+            inFlight.remove(key, future);
+            future.completeExceptionally(throwable);
+            return;
+        }
+
+        //remove first, so callers that observe the completion never get the finished call again
+        inFlight.remove(key, future);
+        future.complete(result);
+    }
+
+    private static Exception unwrap(Throwable cause) {
+        if (cause instanceof Exception) {
+            return (Exception) cause;
+        }
+
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+
+        return new ExecutionException(cause);
+    }
+}
@@ -0,0 +1,119 @@
+package com.github.games647.changeskin.core;
+
+import com.github.games647.changeskin.core.model.UserPreference;
+import com.github.games647.changeskin.core.model.skin.SkinModel;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded in-memory view of the skin database. Skins are indexed by their row id and by the profile that owns them,
+ * so both lookups of {@link SkinStorage} could be answered without borrowing a database connection.
+ */
+public class SkinCache {
+
+    private final Cache<Integer, SkinModel> skinsById;
+    private final Cache<UUID, SkinModel> skinsByOwner;
+    private final Cache<UUID, UserPreference> preferences;
+
+    public SkinCache(int maxSkins, int maxPreferences, Duration expireAfterAccess) {
+        this.skinsById = newCache(maxSkins, expireAfterAccess);
+        this.skinsByOwner = newCache(maxSkins, expireAfterAccess);
+        this.preferences = newCache(maxPreferences, expireAfterAccess);
+    }
+
+    private static <K, V> Cache<K, V> newCache(int maxSize, Duration expireAfterAccess) {
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().recordStats();
+        if (maxSize >= 0) {
+            builder.maximumSize(maxSize);
+        }
+
+        long expireSeconds = expireAfterAccess.getSeconds();
+        if (expireSeconds > 0) {
+            builder.expireAfterAccess(expireSeconds, TimeUnit.SECONDS);
+        }
+
+        return builder.build();
+    }
+
+    public SkinModel getSkin(int rowId) {
+        return skinsById.getIfPresent(rowId);
+    }
+
+    public SkinModel getSkin(UUID ownerId) {
+        return skinsByOwner.getIfPresent(ownerId);
+    }
+
+    public void putSkin(SkinModel skin) {
+        if (skin == null) {
+            return;
+        }
+
+        if (skin.isSaved()) {
+            skinsById.put(skin.getRowId(), skin);
+        }
+
+        // the owner index represents the newest skin of this profile like the ORDER BY of the database lookup
+        skinsByOwner.asMap().merge(skin.getProfileId(), skin,
+                (old, newer) -> newer.getTimestamp() >= old.getTimestamp() ? newer : old);
+    }
+
+    /**
+     * Points an already loaded skin to the row it was merged into.
+     *
+     * @param oldRowId deleted duplicate row
+     * @param newRowId remaining row with the same textures
+     */
+    public void remapSkin(int oldRowId, int newRowId) {
+        SkinModel skin = skinsById.asMap().remove(oldRowId);
+        if (skin != null) {
+            skin.setRowId(newRowId);
+        }
+    }
+
+    public UserPreference getPreferences(UUID uuid) {
+        return preferences.getIfPresent(uuid);
+    }
+
+    public void putPreferences(UserPreference preference) {
+        if (preference == null) {
+            return;
+        }
+
+        preferences.put(preference.getUuid(), preference);
+        preference.getTargetSkin().ifPresent(this::putSkin);
+    }
+
+    public void invalidatePreferences(UUID uuid) {
+        preferences.invalidate(uuid);
+    }
+
+    public void invalidateAll() {
+        skinsById.invalidateAll();
+        skinsByOwner.invalidateAll();
+        preferences.invalidateAll();
+    }
+
+    /**
+     * @return combined hit and miss counters of the row id and owner skin indexes
+     */
+    public CacheStats getSkinStats() {
+        return skinsById.stats().plus(skinsByOwner.stats());
+    }
+
+    public CacheStats getPreferenceStats() {
+        return preferences.stats();
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + '{' +
+                "skinStats=" + getSkinStats() +
+                ", preferenceStats=" + getPreferenceStats() +
+                '}';
+    }
+}
@@ -0,0 +1,215 @@
+package com.github.games647.changeskin.core;
+
+import com.github.games647.changeskin.core.model.skin.SkinModel;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+
+/**
+ * Stale-while-revalidate for outdated skins. The stored skin is used right away, while the fresh one is downloaded in
+ * the background. Concurrent refreshes of the same owner share a single download. Downloaded skins are saved and
+ * passed to the refresh listener, which updates the players using them.
+ */
+public class SkinRevalidator {
+
+    private static final int MAX_NOTIFIED_OWNERS = 4096;
+
+    private final Logger logger;
+    private final Function<UUID, CompletableFuture<Optional<SkinModel>>> downloader;
+    private final Function<UUID, SkinModel> knownSkins;
+    private final Consumer<SkinModel> saver;
+    private final Consumer<SkinModel> refreshListener;
+    private final Executor executor;
+    private final Duration maxAge;
+
+    //owner -> running refresh
+    private final Map<UUID, CompletableFuture<SkinModel>> refreshes = new ConcurrentHashMap<>();
+
+    //owner -> timestamp of the newest skin passed to the refresh listener
+    private final Map<UUID, Long> notified = CommonUtil.buildCache(0, MAX_NOTIFIED_OWNERS);
+
+    /**
+     * @param logger logger for failed downloads
+     * @param downloader downloads the current skin of an owner
+     * @param knownSkins newest already loaded skin of an owner or null
+     * @param saver saves downloaded skins
+     * @param refreshListener called with every downloaded skin
+     * @param executor runs the saver and the listener
+     * @param maxAge age after which a skin is outdated
+     */
+    public SkinRevalidator(Logger logger, Function<UUID, CompletableFuture<Optional<SkinModel>>> downloader
+            , Function<UUID, SkinModel> knownSkins, Consumer<SkinModel> saver, Consumer<SkinModel> refreshListener
+            , Executor executor, Duration maxAge) {
+        this.logger = logger;
+        this.downloader = downloader;
+        this.knownSkins = knownSkins;
+        this.saver = saver;
+        this.refreshListener = refreshListener;
+        this.executor = executor;
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * @param skin stored skin
+     * @return the newest known skin of the same owner. A refresh is started if it's outdated.
+     */
+    public SkinModel revalidate(SkinModel skin) {
+        if (!skin.isOutdated(maxAge)) {
+            return skin;
+        }
+
+        return refresh(skin).getNow(skin);
+    }
+
+    /**
+     * @param skin stored skin
+     * @return future completing with the fresh skin or the stored one if the download failed
+     */
+    public CompletableFuture<SkinModel> refresh(SkinModel skin) {
+        //another player of the same owner could have been refreshed already
+        SkinModel known = knownSkins.apply(skin.getProfileId());
+        if (known != null && known.getTimestamp() > skin.getTimestamp() && !known.isOutdated(maxAge)) {
+            //the players only need to be updated once per newer skin and not on every sweep or login
+            if (markNotified(known)) {
+                execute(() -> notifyListener(known));
+            }
+
+            return CompletableFuture.completedFuture(known);
+        }
+
+        UUID ownerId = skin.getProfileId();
+        CompletableFuture<SkinModel> refresh = new CompletableFuture<>();
+        CompletableFuture<SkinModel> running = refreshes.putIfAbsent(ownerId, refresh);
+        if (running != null) {
+            return running;
+        }
+
+        CompletableFuture<Optional<SkinModel>> download;
+        try {
+            download = downloader.apply(ownerId);
+        } catch (RuntimeException ex) {
+            //like a rejected execution during the shutdown - the next sweep or login tries it again
+            logger.error("Failed to refresh the skin of {}", ownerId, ex);
+            finish(ownerId, refresh, skin);
+            return refresh;
+        }
+
+        download.whenComplete((downloaded, error) -> {
+            if (error != null) {
+                logger.error("Failed to refresh the skin of {}", ownerId, error);
+                finish(ownerId, refresh, skin);
+            } else if (downloaded.isPresent()) {
+                SkinModel fresh = downloaded.get();
+                boolean executed = execute(() -> {
+                    saveAndNotify(fresh);
+                    finish(ownerId, refresh, fresh);
+                });
+
+                if (!executed) {
+                    finish(ownerId, refresh, fresh);
+                }
+            } else {
+                finish(ownerId, refresh, skin);
+            }
+        });
+        return refresh;
+    }
+
+    private void finish(UUID ownerId, CompletableFuture<SkinModel> refresh, SkinModel result) {
+        refreshes.remove(ownerId, refresh);
+        refresh.complete(result);
+    }
+
+    private boolean execute(Runnable task) {
+        try {
+            executor.execute(task);
+            return true;
+        } catch (RejectedExecutionException rejectedEx) {
+            logger.debug("Skipped saving and applying a refreshed skin during the shutdown", rejectedEx);
+            return false;
+        }
+    }
+
+    private boolean markNotified(SkinModel skin) {
+        Long previous = notified.get(skin.getProfileId());
+        if (previous != null && previous >= skin.getTimestamp()) {
+            return false;
+        }
+
+        notified.merge(skin.getProfileId(), skin.getTimestamp(), Math::max);
+        return true;
+    }
+
+    /**
+     * Refreshes the skins that are outdated now or will be within the given time. The oldest skins come first.
+     *
+     * @param skins skins in use
+     * @param ahead refresh skins that are outdated within this time
+     * @param budget maximum number of downloads
+     * @return number of started refreshes
+     */
+    public int sweep(Collection<SkinModel> skins, Duration ahead, int budget) {
+        Duration threshold = maxAge.minus(ahead);
+        if (threshold.isNegative()) {
+            threshold = Duration.ZERO;
+        }
+
+        Map<UUID, SkinModel> outdated = new HashMap<>();
+        for (SkinModel skin : skins) {
+            if (skin.isOutdated(threshold) && !refreshes.containsKey(skin.getProfileId())) {
+                //the oldest skin of an owner needs the refresh the most
+                outdated.merge(skin.getProfileId(), skin, (old, other) ->
+                        other.getTimestamp() < old.getTimestamp() ? other : old);
+            }
+        }
+
+        List<SkinModel> candidates = new ArrayList<>(outdated.values());
+        candidates.sort(Comparator.comparingLong(SkinModel::getTimestamp));
+
+        int started = Math.min(candidates.size(), Math.max(budget, 0));
+        candidates.subList(0, started).forEach(this::refresh);
+        return started;
+    }
+
+    /**
+     * @return number of running downloads
+     */
+    public int getRunningRefreshes() {
+        return refreshes.size();
+    }
+
+    private void saveAndNotify(SkinModel skin) {
+        try {
+            //the storage updates the timestamp of an existing row with the same textures
+            saver.accept(skin);
+        } catch (RuntimeException ex) {
+            logger.error("Failed to save refreshed skin {}", skin, ex);
+        }
+
+        markNotified(skin);
+        notifyListener(skin);
+    }
+
+    private void notifyListener(SkinModel skin) {
+        try {
+            refreshListener.accept(skin);
+        } catch (RuntimeException ex) {
+            logger.error("Failed to update the players of refreshed skin {}", skin, ex);
+        }
+    }
+}
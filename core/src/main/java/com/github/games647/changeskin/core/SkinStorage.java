@@ -4,23 +4,30 @@ import com.github.games647.changeskin.core.model.UUIDTypeAdapter;
 import com.github.games647.changeskin.core.model.UserPreference;
 import com.github.games647.changeskin.core.model.skin.SkinModel;
 import com.github.games647.changeskin.core.model.skin.TextureModel;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Striped;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.UUID;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
 
 import org.slf4j.Logger;
 
@@ -32,13 +39,51 @@ public class SkinStorage {
 
     private static final String USER_TABLE = "preferences";
     private static final String DATA_TABLE = "skinData";
+    private static final String NAME_TABLE = "nameCache";
+    private static final String CRACKED_TABLE = "crackedProfiles";
+
+    //stay below the bind variable limit of old SQLite versions (999)
+    private static final int IN_CHUNK_SIZE = 500;
+
+    //rows per compaction transaction and the pause between them
+    private static final int COMPACTION_CHUNK_SIZE = 100;
+    private static final Duration COMPACTION_PAUSE = Duration.ofMillis(200);
+
+    private static final String SELECT_PREFERENCES = "SELECT `SkinId`, `Timestamp`, "
+            + DATA_TABLE + ".UUID, `Name`, `SlimModel`, `SkinUrl`, `CapeUrl`, `Signature`, `EncodedValue`, "
+            + USER_TABLE + ".*"
+            + " FROM " + USER_TABLE
+            + " LEFT JOIN " + DATA_TABLE + " ON " + USER_TABLE + ".TargetSkin=" + DATA_TABLE + ".SkinID";
+
+    private static final String SELECT_SKIN = "SELECT SkinId, Timestamp, UUID, Name, "
+            + "SlimModel, SkinUrl, CapeUrl, Signature, EncodedValue FROM " + DATA_TABLE;
+
+    private static final String FIND_SKIN = "SELECT `SkinID`, `Timestamp` FROM " + DATA_TABLE
+            + " WHERE `UUID`=? AND `TextureHash`=? ORDER BY `Timestamp` DESC LIMIT 1";
+
+    private static final String REFRESH_SKIN = "UPDATE " + DATA_TABLE
+            + " SET `Timestamp`=?, `Name`=?, `Signature`=?, `EncodedValue`=? WHERE `SkinID`=?";
+
+    private static final String INSERT_SKIN = "INSERT INTO " + DATA_TABLE
+            + " (`Timestamp`, `UUID`, `Name`, `SlimModel`, `SkinURL`, `CapeURL`, `Signature`, `TextureHash`"
+            + ", `EncodedValue`) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    //the same skin or preference is only written by one thread at a time. Reads don't lock.
+    private static final int SAVE_LOCK_STRIPES = 64;
 
     private final Logger logger;
     private final HikariDataSource dataSource;
+    private final SkinCache cache;
+    private final Striped<Lock> saveLocks = Striped.lock(SAVE_LOCK_STRIPES);
 
-    public SkinStorage(ChangeSkinCore core, String driver, String host, int port, String database
+    //another server sharing the database could convert the layout at runtime
+    private volatile boolean binaryUUID;
+    private volatile Function<UUID, UserPreference> pendingSaves = uuid -> null;
+
+    public SkinStorage(ChangeSkinCore core, SkinCache cache, String driver, String host, int port, String database
             , String user, String pass, boolean useSSL) {
         this.logger = core.getLogger();
+        this.cache = cache;
 
         HikariConfig config = new HikariConfig();
         config.setPoolName(core.getPlugin().getName());
@@ -82,61 +127,138 @@ public class SkinStorage {
         this.dataSource = new HikariDataSource(config);
     }
 
-    public void createTables() throws SQLException {
-        // TODO: Add transaction mode to prevent half table setup
-        try (
-                InputStream in = getClass().getResourceAsStream("/create.sql");
-                BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))
-        ) {
-            try (
-                    Connection con = dataSource.getConnection();
-                    Statement stmt = con.createStatement()
-            ) {
-                StringBuilder builder = new StringBuilder();
-
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    if (line.startsWith("#") || line.startsWith("-- ")) continue;
-
-                    builder.append(line);
-                    if (line.endsWith(";")) {
-                        String sql = builder.toString();
-                        if (dataSource.getJdbcUrl().contains("sqlite")) {
-                            sql = sql.replace("AUTO_INCREMENT", "AUTOINCREMENT");
-                        }
-
-                        stmt.addBatch(sql);
-                        builder = new StringBuilder();
+    /**
+     * Applies the pending schema migrations and optionally converts the player ids to the binary layout.
+     *
+     * @param binaryUUID convert the UUID columns to BINARY(16) if they are still stored as text
+     * @throws SQLException if the schema couldn't be migrated
+     */
+    public void migrate(boolean binaryUUID) throws SQLException {
+        SchemaMigrator migrator = new SchemaMigrator(logger, dataSource, dataSource.getJdbcUrl().contains("sqlite"));
+        migrator.migrate();
+
+        boolean binaryLayout = migrator.isBinaryLayout();
+        if (binaryUUID && !binaryLayout) {
+            migrator.convertToBinaryUUID();
+            binaryLayout = true;
+        } else if (!binaryUUID && binaryLayout) {
+            logger.warn("Player ids are already stored in binary. Converting them back is not supported");
+        }
+
+        this.binaryUUID = binaryLayout;
+    }
+
+    /**
+     * Detects a conversion of the player ids by another server sharing this database, so this one doesn't keep
+     * querying and writing them in the old layout until the next restart.
+     */
+    public void checkLayout() {
+        SchemaMigrator migrator = new SchemaMigrator(logger, dataSource, dataSource.getJdbcUrl().contains("sqlite"));
+        try {
+            boolean binaryLayout = migrator.isBinaryLayout();
+            if (binaryLayout != binaryUUID) {
+                logger.info("Player ids were converted by another server. Binary layout: {}", binaryLayout);
+                binaryUUID = binaryLayout;
+            }
+        } catch (SQLException sqlEx) {
+            //the tables are renamed while another server converts them
+            logger.debug("Failed to check the layout of the player ids", sqlEx);
+        }
+    }
+
+    /**
+     * @param pendingSaves preferences that are not written to the database yet. They take precedence over the stored
+     * rows, because the cache could evict them before they are saved.
+     */
+    public void setPendingSaves(Function<UUID, UserPreference> pendingSaves) {
+        this.pendingSaves = pendingSaves;
+    }
+
+    public UserPreference getPreferences(UUID uuid) {
+        UserPreference cached = getLoadedPreferences(uuid);
+        if (cached != null) {
+            return cached;
+        }
+
+        UserPreference loaded = loadPreferences(uuid);
+        cache.putPreferences(loaded);
+        return loaded;
+    }
+
+    /**
+     * Bulk variant of {@link #getPreferences(UUID)}. Cached entries are returned directly and the remaining ones are
+     * fetched using chunked IN queries, so a whole server could be loaded in a few round trips.
+     *
+     * @param uuids player ids
+     * @return preferences for all players that could be loaded. Players without a database entry get empty
+     * preferences like in the single lookup.
+     */
+    public Map<UUID, UserPreference> getPreferences(Collection<UUID> uuids) {
+        Map<UUID, UserPreference> result = new HashMap<>(uuids.size());
+
+        List<UUID> missing = new ArrayList<>();
+        for (UUID uuid : new LinkedHashSet<>(uuids)) {
+            UserPreference cached = getLoadedPreferences(uuid);
+            if (cached == null) {
+                missing.add(uuid);
+            } else {
+                result.put(uuid, cached);
+            }
+        }
+
+        for (List<UUID> chunk : Lists.partition(missing, IN_CHUNK_SIZE)) {
+            String placeholders = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+            try (Connection con = dataSource.getConnection();
+                 PreparedStatement stmt = con.prepareStatement(SELECT_PREFERENCES
+                         + " WHERE " + USER_TABLE + ".UUID IN (" + placeholders + ')')) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    stmt.setObject(i + 1, toDatabaseId(chunk.get(i)));
+                }
+
+                Map<UUID, UserPreference> loaded = new HashMap<>(chunk.size());
+                try (ResultSet resultSet = stmt.executeQuery()) {
+                    while (resultSet.next()) {
+                        UUID uuid = fromDatabaseId(resultSet, 11);
+                        loaded.put(uuid, parsePreferences(resultSet, uuid));
                     }
                 }
 
-                stmt.executeBatch();
+                for (UUID uuid : chunk) {
+                    UserPreference preference = loaded.computeIfAbsent(uuid, UserPreference::new);
+                    cache.putPreferences(preference);
+                    result.put(uuid, preference);
+                }
+            } catch (SQLException sqlEx) {
+                logger.error("Failed to query preferences of {} players", chunk.size(), sqlEx);
             }
-        } catch (IOException ioEx) {
-            logger.error("Failed to load migration file", ioEx);
         }
+
+        return result;
     }
 
-    public UserPreference getPreferences(UUID uuid) {
+    private UserPreference getLoadedPreferences(UUID uuid) {
+        UserPreference cached = cache.getPreferences(uuid);
+        if (cached != null) {
+            return cached;
+        }
+
+        UserPreference pending = pendingSaves.apply(uuid);
+        if (pending != null) {
+            cache.putPreferences(pending);
+        }
+
+        return pending;
+    }
+
+    private UserPreference loadPreferences(UUID uuid) {
         try (Connection con = dataSource.getConnection();
-             PreparedStatement stmt = con.prepareStatement("SELECT `SkinId`, `Timestamp`, "
-                     + DATA_TABLE + ".UUID, `Name`, `SlimModel`, `SkinUrl`, `CapeUrl`, `Signature`, " + USER_TABLE + ".*"
-                     + " FROM " + USER_TABLE
-                     + " LEFT JOIN " + DATA_TABLE + " ON " + USER_TABLE + ".TargetSkin=" + DATA_TABLE + ".SkinID"
+             PreparedStatement stmt = con.prepareStatement(SELECT_PREFERENCES
                      + " WHERE " + USER_TABLE + ".UUID=? LIMIT 1")) {
-            stmt.setString(1, UUIDTypeAdapter.toMojangId(uuid));
+            stmt.setObject(1, toDatabaseId(uuid));
 
             try (ResultSet resultSet = stmt.executeQuery()) {
                 if (resultSet.next()) {
-                    int prefId = resultSet.getInt(9);
-
-                    SkinModel skinData = null;
-                    if (resultSet.getObject(1) != null) {
-                        skinData = parseSkinData(resultSet);
-                    }
-
-                    boolean keepSkin = resultSet.getBoolean(12);
-                    return new UserPreference(prefId, uuid, skinData, keepSkin);
+                    return parsePreferences(resultSet, uuid);
                 } else {
                     return new UserPreference(uuid);
                 }
@@ -148,10 +270,32 @@ public class SkinStorage {
         return null;
     }
 
+    private UserPreference parsePreferences(ResultSet resultSet, UUID uuid) throws SQLException {
+        int prefId = resultSet.getInt(10);
+
+        SkinModel skinData = null;
+        if (resultSet.getObject(1) != null) {
+            skinData = parseSkinData(resultSet);
+        }
+
+        boolean keepSkin = resultSet.getBoolean(13);
+        return new UserPreference(prefId, uuid, skinData, keepSkin);
+    }
+
     public SkinModel getSkin(int targetSkinId) {
+        SkinModel cached = cache.getSkin(targetSkinId);
+        if (cached != null) {
+            return cached;
+        }
+
+        SkinModel loaded = loadSkin(targetSkinId);
+        cache.putSkin(loaded);
+        return loaded;
+    }
+
+    private SkinModel loadSkin(int targetSkinId) {
         try (Connection con = dataSource.getConnection();
-             PreparedStatement stmt = con.prepareStatement("SELECT SkinId, Timestamp, UUID, Name, " +
-                     "SlimModel, SkinUrl, CapeUrl, Signature FROM " + DATA_TABLE + " WHERE SkinID=?")) {
+             PreparedStatement stmt = con.prepareStatement(SELECT_SKIN + " WHERE SkinID=?")) {
             stmt.setInt(1, targetSkinId);
 
             try (ResultSet resultSet = stmt.executeQuery()) {
@@ -167,11 +311,21 @@ public class SkinStorage {
     }
 
     public SkinModel getSkin(UUID skinUUID) {
+        SkinModel cached = cache.getSkin(skinUUID);
+        if (cached != null) {
+            return cached;
+        }
+
+        SkinModel loaded = loadSkin(skinUUID);
+        cache.putSkin(loaded);
+        return loaded;
+    }
+
+    private SkinModel loadSkin(UUID skinUUID) {
         try (Connection con = dataSource.getConnection();
-             PreparedStatement stmt = con.prepareStatement("SELECT SkinId, Timestamp, UUID, Name, " +
-                     "SlimModel, SkinUrl, CapeUrl, Signature FROM " + DATA_TABLE
+             PreparedStatement stmt = con.prepareStatement(SELECT_SKIN
                      + " WHERE UUID=? ORDER BY Timestamp DESC LIMIT 1")) {
-            stmt.setString(1, UUIDTypeAdapter.toMojangId(skinUUID));
+            stmt.setObject(1, toDatabaseId(skinUUID));
 
             try (ResultSet resultSet = stmt.executeQuery()) {
                 if (resultSet.next()) {
@@ -185,56 +339,222 @@ public class SkinStorage {
         return null;
     }
 
+    /**
+     * Bulk variant of {@link #getSkin(int)}. Only the entries that are not cached are queried.
+     *
+     * @param rowIds skin row ids
+     * @return found skins by their row id
+     */
+    public Map<Integer, SkinModel> getSkins(Collection<Integer> rowIds) {
+        Map<Integer, SkinModel> result = new HashMap<>(rowIds.size());
+
+        List<Integer> missing = new ArrayList<>();
+        for (Integer rowId : new LinkedHashSet<>(rowIds)) {
+            SkinModel cached = cache.getSkin(rowId);
+            if (cached == null) {
+                missing.add(rowId);
+            } else {
+                result.put(rowId, cached);
+            }
+        }
+
+        try {
+            for (SkinModel skin : querySkins("SkinID", missing)) {
+                cache.putSkin(skin);
+                result.put(skin.getRowId(), skin);
+            }
+        } catch (SQLException sqlEx) {
+            logger.error("Failed to query skin data of {} row ids", missing.size(), sqlEx);
+        }
+
+        return result;
+    }
+
+    /**
+     * Bulk variant of {@link #getSkin(UUID)}. Only the entries that are not cached are queried.
+     *
+     * @param owners skin owners
+     * @return the newest skin of each owner that could be found
+     */
+    public Map<UUID, SkinModel> getSkinsByOwner(Collection<UUID> owners) {
+        Map<UUID, SkinModel> result = new HashMap<>(owners.size());
+
+        List<Object> missing = new ArrayList<>();
+        for (UUID owner : new LinkedHashSet<>(owners)) {
+            SkinModel cached = cache.getSkin(owner);
+            if (cached == null) {
+                missing.add(toDatabaseId(owner));
+            } else {
+                result.put(owner, cached);
+            }
+        }
+
+        try {
+            for (SkinModel skin : querySkins("UUID", missing)) {
+                cache.putSkin(skin);
+                result.merge(skin.getProfileId(), skin,
+                        (old, newer) -> newer.getTimestamp() > old.getTimestamp() ? newer : old);
+            }
+        } catch (SQLException sqlEx) {
+            logger.error("Failed to query skin data of {} owners", missing.size(), sqlEx);
+        }
+
+        return result;
+    }
+
+    private List<SkinModel> querySkins(String column, List<?> values) throws SQLException {
+        List<SkinModel> skins = new ArrayList<>(values.size());
+        for (List<?> chunk : Lists.partition(values, IN_CHUNK_SIZE)) {
+            String placeholders = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+            try (Connection con = dataSource.getConnection();
+                 PreparedStatement stmt = con.prepareStatement(SELECT_SKIN
+                         + " WHERE " + column + " IN (" + placeholders + ')')) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    stmt.setObject(i + 1, chunk.get(i));
+                }
+
+                try (ResultSet resultSet = stmt.executeQuery()) {
+                    while (resultSet.next()) {
+                        skins.add(parseSkinData(resultSet));
+                    }
+                }
+            }
+        }
+
+        return skins;
+    }
+
     public void save(UserPreference preferences) {
-        SkinModel targetSkin = preferences.getTargetSkin().orElse(null);
-        if (targetSkin != null && !targetSkin.isSaved()) {
-            throw new IllegalArgumentException("Tried saving preferences without skin");
+        save(Collections.singletonList(preferences));
+    }
+
+    /**
+     * Saves the preferences and their not yet saved target skins using a single connection and transaction.
+     * Updates and deletions are sent as JDBC batches. Inserts are executed one by one, because the generated keys
+     * are required for the foreign key references.
+     *
+     * @param preferences preferences to be saved
+     * @return false if the transaction failed and nothing was saved
+     */
+    public boolean save(Collection<UserPreference> preferences) {
+        if (preferences.isEmpty()) {
+            return true;
         }
 
-        preferences.getSaveLock().lock();
+        List<Runnable> rollbacks = new ArrayList<>();
         try (Connection con = dataSource.getConnection()) {
-            if (preferences.isSaved()) {
-                if (targetSkin == null) {
-                    try (PreparedStatement stmt = con.prepareStatement("DELETE FROM " + USER_TABLE
-                            + " WHERE UserID=?")) {
-                        stmt.setInt(1, preferences.getRowId());
-                        stmt.executeUpdate();
-                    }
-                } else {
-                    try (PreparedStatement stmt = con.prepareStatement("UPDATE " + USER_TABLE
-                            + " SET TargetSkin=? WHERE UserID=?")) {
-                        stmt.setInt(1, targetSkin.getRowId());
-                        stmt.setInt(2, preferences.getRowId());
-                        stmt.executeUpdate();
+            boolean autoCommit = con.getAutoCommit();
+            con.setAutoCommit(false);
+            try (SkinWriter skinWriter = new SkinWriter(con);
+                 PreparedStatement insertStmt = con.prepareStatement("INSERT INTO " + USER_TABLE
+                         + " (UUID, TargetSkin, KeepSkin) VALUES (?, ?, ?)", RETURN_GENERATED_KEYS);
+                 PreparedStatement updateStmt = con.prepareStatement("UPDATE " + USER_TABLE
+                         + " SET TargetSkin=?, KeepSkin=? WHERE UserID=?");
+                 PreparedStatement deleteStmt = con.prepareStatement("DELETE FROM " + USER_TABLE
+                         + " WHERE UserID=?")) {
+                for (UserPreference preference : preferences) {
+                    SkinModel targetSkin = preference.getTargetSkin().orElse(null);
+                    if (targetSkin != null && !skinWriter.write(targetSkin, rollbacks)) {
+                        continue;
                     }
+
+                    addPreference(preference, targetSkin, insertStmt, updateStmt, deleteStmt, rollbacks);
                 }
-            } else {
-                if (targetSkin == null) {
-                    //don't save empty preferences
-                    return;
+
+                updateStmt.executeBatch();
+                deleteStmt.executeBatch();
+                con.commit();
+
+                //index the new row ids of the target skins
+                preferences.forEach(cache::putPreferences);
+                return true;
+            } catch (SQLException sqlEx) {
+                con.rollback();
+                rollbacks.forEach(Runnable::run);
+                throw sqlEx;
+            } finally {
+                con.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException sqlEx) {
+            logger.error("Failed to save {} preferences", preferences.size(), sqlEx);
+        }
+
+        return false;
+    }
+
+    /**
+     * Inserts all skins that are not saved yet in a single transaction.
+     *
+     * @param skins skins to be saved
+     * @return true if all skins are saved
+     */
+    public boolean saveSkins(Collection<SkinModel> skins) {
+        if (skins.isEmpty()) {
+            return true;
+        }
+
+        List<Runnable> rollbacks = new ArrayList<>();
+        try (Connection con = dataSource.getConnection()) {
+            boolean autoCommit = con.getAutoCommit();
+            con.setAutoCommit(false);
+
+            boolean allSaved = true;
+            try (SkinWriter skinWriter = new SkinWriter(con)) {
+                for (SkinModel skin : skins) {
+                    allSaved &= skinWriter.write(skin, rollbacks);
                 }
 
-                String insertQuery = "INSERT INTO " + USER_TABLE + " (UUID, TargetSkin, KeepSkin) " +
-                        "VALUES (?, ?, ?)";
+                con.commit();
+            } catch (SQLException sqlEx) {
+                con.rollback();
+                rollbacks.forEach(Runnable::run);
+                throw sqlEx;
+            } finally {
+                con.setAutoCommit(autoCommit);
+            }
 
-                try (PreparedStatement stmt = con.prepareStatement(insertQuery, RETURN_GENERATED_KEYS)) {
-                    stmt.setString(1, UUIDTypeAdapter.toMojangId(preferences.getUuid()));
-                    stmt.setInt(2, targetSkin.getRowId());
-                    stmt.setBoolean(3, preferences.isKeepSkin());
+            skins.forEach(cache::putSkin);
+            return allSaved;
+        } catch (SQLException sqlEx) {
+            logger.error("Failed to save {} skins", skins.size(), sqlEx);
+        }
 
-                    stmt.executeUpdate();
+        return false;
+    }
 
-                    try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
-                        if (generatedKeys != null && generatedKeys.next()) {
-                            preferences.setRowId(generatedKeys.getInt(1));
-                        }
+    private void addPreference(UserPreference preference, SkinModel targetSkin, PreparedStatement insertStmt,
+                               PreparedStatement updateStmt, PreparedStatement deleteStmt, List<Runnable> rollbacks)
+            throws SQLException {
+        Lock saveLock = saveLocks.get(preference);
+        saveLock.lock();
+        try {
+            if (preference.isSaved()) {
+                if (targetSkin == null) {
+                    deleteStmt.setInt(1, preference.getRowId());
+                    deleteStmt.addBatch();
+                } else {
+                    updateStmt.setInt(1, targetSkin.getRowId());
+                    updateStmt.setBoolean(2, preference.isKeepSkin());
+                    updateStmt.setInt(3, preference.getRowId());
+                    updateStmt.addBatch();
+                }
+            } else if (targetSkin != null) {
+                //don't save empty preferences
+                insertStmt.setObject(1, toDatabaseId(preference.getUuid()));
+                insertStmt.setInt(2, targetSkin.getRowId());
+                insertStmt.setBoolean(3, preference.isKeepSkin());
+                insertStmt.executeUpdate();
+
+                try (ResultSet generatedKeys = insertStmt.getGeneratedKeys()) {
+                    if (generatedKeys != null && generatedKeys.next()) {
+                        int rowId = generatedKeys.getInt(1);
+                        preference.setRowId(rowId);
+                        rollbacks.add(() -> preference.compareAndSetRowId(rowId, -1));
                     }
                 }
             }
-        } catch (SQLException sqlEx) {
-            logger.error("Failed to save preferences for: {}", preferences, sqlEx);
         } finally {
-            preferences.getSaveLock().unlock();
+            saveLock.unlock();
         }
     }
 
@@ -243,68 +563,328 @@ public class SkinStorage {
             return false;
         }
 
-        skinData.getSaveLock().lock();
-        try {
-            if (skinData.isSaved()) {
-                //skin already saved
+        try (Connection con = dataSource.getConnection();
+             SkinWriter skinWriter = new SkinWriter(con)) {
+            if (skinWriter.write(skinData, new ArrayList<>())) {
+                cache.putSkin(skinData);
                 return true;
             }
+        } catch (SQLException sqlEx) {
+            logger.error("Failed to query skin data: {}", skinData, sqlEx);
+        }
 
-            TextureModel skinTexture = skinData.getTextures().get(SKIN);
-            String skinUrl = "";
-            boolean slimModel = false;
-            if (skinTexture != null) {
-                skinUrl = skinTexture.getShortUrl();
-                slimModel = skinTexture.isSlim();
+        return false;
+    }
+
+    /**
+     * Merges skins of the same profile and texture content into the newest row. Rows created before the texture
+     * hash existed get their hash first. The preferences are pointed to the remaining row before the duplicates are
+     * deleted, so the cascading delete doesn't remove them. Rows without a stored encoded value get it afterwards.
+     *
+     * Every chunk uses its own connection and short transaction with a pause in between, so the compaction of a large
+     * table doesn't hold a pooled connection or the database lock for long. Should run on a dedicated thread.
+     */
+    public void compact() {
+        try {
+            int hashed = compactChunks(this::fillTextureHashes);
+            int merged = compactChunks(this::mergeDuplicates);
+            int encoded = compactChunks(this::fillEncodedValues);
+            if (hashed > 0 || merged > 0 || encoded > 0) {
+                logger.info("Compacted skin storage: hashed {}, merged {} duplicate and encoded {} skins"
+                        , hashed, merged, encoded);
             }
+        } catch (SQLException sqlEx) {
+            logger.error("Failed to compact skin storage", sqlEx);
+        } catch (InterruptedException interruptedEx) {
+            //shutdown - the remaining rows are compacted with the next run
+            Thread.currentThread().interrupt();
+        }
+    }
 
-            TextureModel capeTexture = skinData.getTextures().get(CAPE);
-            String capeUrl = "";
-            if (capeTexture != null) {
-                capeUrl = capeTexture.getShortUrl();
+    private int compactChunks(CompactionStep step) throws SQLException, InterruptedException {
+        int total = 0;
+        while (true) {
+            List<Runnable> afterCommit = new ArrayList<>();
+            int processed;
+            try (Connection con = dataSource.getConnection()) {
+                boolean autoCommit = con.getAutoCommit();
+                con.setAutoCommit(false);
+                try {
+                    processed = step.compact(con, afterCommit);
+                    con.commit();
+                } catch (SQLException sqlEx) {
+                    con.rollback();
+                    throw sqlEx;
+                } finally {
+                    con.setAutoCommit(autoCommit);
+                }
             }
 
-            try (Connection con = dataSource.getConnection();
-                 PreparedStatement stmt = con.prepareStatement("INSERT INTO " + DATA_TABLE
-                         + " (`Timestamp`, `UUID`, `Name`, `SlimModel`, `SkinURL`, `CapeURL`, `Signature`) VALUES"
-                         + " (?, ?, ?, ?, ?, ?, ?)", RETURN_GENERATED_KEYS)) {
+            afterCommit.forEach(Runnable::run);
+            if (processed == 0) {
+                return total;
+            }
 
-                stmt.setLong(1, skinData.getTimestamp());
-                stmt.setString(2, UUIDTypeAdapter.toMojangId(skinData.getProfileId()));
-                stmt.setString(3, skinData.getProfileName());
-                stmt.setBoolean(4, slimModel);
-                stmt.setString(5, skinUrl);
-                stmt.setString(6, capeUrl);
-                stmt.setBytes(7, Base64.getDecoder().decode(skinData.getSignature()));
+            total += processed;
 
-                stmt.executeUpdate();
+            //leave the connection and the database lock to the logins and saves for a moment
+            Thread.sleep(COMPACTION_PAUSE.toMillis());
+        }
+    }
 
-                try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
-                    if (generatedKeys != null && generatedKeys.next()) {
-                        skinData.setRowId(generatedKeys.getInt(1));
-                        return true;
-                    }
+    private int fillEncodedValues(Connection con, List<Runnable> afterCommit) throws SQLException {
+        List<SkinModel> skins = new ArrayList<>();
+        try (Statement stmt = con.createStatement();
+             ResultSet resultSet = stmt.executeQuery(SELECT_SKIN + " WHERE `EncodedValue` IS NULL LIMIT "
+                     + COMPACTION_CHUNK_SIZE)) {
+            while (resultSet.next()) {
+                skins.add(parseSkinData(resultSet));
+            }
+        }
+
+        if (skins.isEmpty()) {
+            return 0;
+        }
+
+        try (PreparedStatement stmt = con.prepareStatement("UPDATE " + DATA_TABLE
+                + " SET `EncodedValue`=? WHERE `SkinID`=?")) {
+            for (SkinModel skin : skins) {
+                stmt.setString(1, skin.getEncodedValue());
+                stmt.setInt(2, skin.getRowId());
+                stmt.addBatch();
+            }
+
+            stmt.executeBatch();
+        }
+
+        return skins.size();
+    }
+
+    private int fillTextureHashes(Connection con, List<Runnable> afterCommit) throws SQLException {
+        Map<Integer, String> hashes = new HashMap<>();
+        try (Statement stmt = con.createStatement();
+             ResultSet resultSet = stmt.executeQuery("SELECT `SkinID`, `SlimModel`, `SkinURL`, `CapeURL` FROM "
+                     + DATA_TABLE + " WHERE `TextureHash` IS NULL LIMIT " + COMPACTION_CHUNK_SIZE)) {
+            while (resultSet.next()) {
+                String hash = SkinModel.hashTextures(resultSet.getString(3), resultSet.getString(4),
+                        resultSet.getBoolean(2));
+                hashes.put(resultSet.getInt(1), hash);
+            }
+        }
+
+        if (hashes.isEmpty()) {
+            return 0;
+        }
+
+        try (PreparedStatement stmt = con.prepareStatement("UPDATE " + DATA_TABLE
+                + " SET `TextureHash`=? WHERE `SkinID`=?")) {
+            for (Map.Entry<Integer, String> entry : hashes.entrySet()) {
+                stmt.setString(1, entry.getValue());
+                stmt.setInt(2, entry.getKey());
+                stmt.addBatch();
+            }
+
+            stmt.executeBatch();
+        }
+
+        return hashes.size();
+    }
+
+    private int mergeDuplicates(Connection con, List<Runnable> afterCommit) throws SQLException {
+        List<Object[]> groups = new ArrayList<>();
+        try (Statement stmt = con.createStatement();
+             ResultSet resultSet = stmt.executeQuery("SELECT `UUID`, `TextureHash` FROM " + DATA_TABLE
+                     + " WHERE `TextureHash` IS NOT NULL GROUP BY `UUID`, `TextureHash` HAVING COUNT(*) > 1"
+                     + " LIMIT " + COMPACTION_CHUNK_SIZE)) {
+            while (resultSet.next()) {
+                groups.add(new Object[]{resultSet.getObject(1), resultSet.getString(2)});
+            }
+        }
+
+        int merged = 0;
+        for (Object[] group : groups) {
+            merged += mergeGroup(con, group[0], (String) group[1], afterCommit);
+        }
+
+        return merged;
+    }
+
+    private int mergeGroup(Connection con, Object owner, String textureHash, List<Runnable> afterCommit)
+            throws SQLException {
+        List<Integer> rowIds = new ArrayList<>();
+        try (PreparedStatement stmt = con.prepareStatement("SELECT `SkinID` FROM " + DATA_TABLE
+                + " WHERE `UUID`=? AND `TextureHash`=? ORDER BY `Timestamp` DESC, `SkinID` DESC")) {
+            stmt.setObject(1, owner);
+            stmt.setString(2, textureHash);
+            try (ResultSet resultSet = stmt.executeQuery()) {
+                while (resultSet.next()) {
+                    rowIds.add(resultSet.getInt(1));
+                }
+            }
+        }
+
+        if (rowIds.size() < 2) {
+            return 0;
+        }
+
+        int keptId = rowIds.get(0);
+        List<Integer> duplicates = rowIds.subList(1, rowIds.size());
+        for (List<Integer> chunk : Lists.partition(duplicates, IN_CHUNK_SIZE)) {
+            String placeholders = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+            try (PreparedStatement updateStmt = con.prepareStatement("UPDATE " + USER_TABLE
+                    + " SET `TargetSkin`=? WHERE `TargetSkin` IN (" + placeholders + ')');
+                 PreparedStatement deleteStmt = con.prepareStatement("DELETE FROM " + DATA_TABLE
+                         + " WHERE `SkinID` IN (" + placeholders + ')')) {
+                updateStmt.setInt(1, keptId);
+                for (int i = 0; i < chunk.size(); i++) {
+                    updateStmt.setInt(i + 2, chunk.get(i));
+                    deleteStmt.setInt(i + 1, chunk.get(i));
+                }
+
+                updateStmt.executeUpdate();
+                deleteStmt.executeUpdate();
+            }
+        }
+
+        //loaded preferences still reference the merged skins
+        afterCommit.add(() -> duplicates.forEach(duplicate -> cache.remapSkin(duplicate, keptId)));
+        return duplicates.size();
+    }
+
+    /**
+     * Deletes expired lookups and returns the remaining ones.
+     *
+     * @return cached names. The value is null if the name has no premium account.
+     */
+    public List<PersistentCache.Entry<String, UUID>> loadNames() {
+        List<PersistentCache.Entry<String, UUID>> names = new ArrayList<>();
+        try (Connection con = dataSource.getConnection()) {
+            deleteExpired(con, NAME_TABLE);
+
+            try (Statement stmt = con.createStatement();
+                 ResultSet resultSet = stmt.executeQuery("SELECT `Name`, `UUID`, `ExpiresAt` FROM " + NAME_TABLE)) {
+                while (resultSet.next()) {
+                    String hexId = resultSet.getString(2);
+                    UUID uuid = hexId == null ? null : UUIDTypeAdapter.parseId(hexId);
+                    names.add(new PersistentCache.Entry<>(resultSet.getString(1), uuid, resultSet.getLong(3)));
                 }
             }
         } catch (SQLException sqlEx) {
-            logger.error("Failed to query skin data: {}", skinData, sqlEx);
-        } finally {
-            skinData.getSaveLock().unlock();
+            logger.error("Failed to load cached names", sqlEx);
         }
 
-        return false;
+        return names;
+    }
+
+    /**
+     * @param names name lookups. A null value marks a name without premium account.
+     */
+    public void saveNames(Collection<PersistentCache.Entry<String, UUID>> names) {
+        if (names.isEmpty()) {
+            return;
+        }
+
+        //REPLACE is supported by MySQL and SQLite
+        try (Connection con = dataSource.getConnection();
+             PreparedStatement stmt = con.prepareStatement("REPLACE INTO " + NAME_TABLE
+                     + " (`Name`, `UUID`, `ExpiresAt`) VALUES (?, ?, ?)")) {
+            for (PersistentCache.Entry<String, UUID> entry : names) {
+                UUID uuid = entry.getValue();
+                stmt.setString(1, entry.getKey());
+                stmt.setString(2, uuid == null ? null : UUIDTypeAdapter.toMojangId(uuid));
+                stmt.setLong(3, entry.getExpiresAt());
+                stmt.addBatch();
+            }
+
+            stmt.executeBatch();
+        } catch (SQLException sqlEx) {
+            logger.error("Failed to save {} cached names", names.size(), sqlEx);
+        }
+    }
+
+    /**
+     * Deletes expired entries and returns the remaining ones.
+     *
+     * @return expiration timestamps of profiles without skin data
+     */
+    public Map<UUID, Long> loadCrackedProfiles() {
+        Map<UUID, Long> profiles = new HashMap<>();
+        try (Connection con = dataSource.getConnection()) {
+            deleteExpired(con, CRACKED_TABLE);
+
+            try (Statement stmt = con.createStatement();
+                 ResultSet resultSet = stmt.executeQuery("SELECT `UUID`, `ExpiresAt` FROM " + CRACKED_TABLE)) {
+                while (resultSet.next()) {
+                    profiles.put(UUIDTypeAdapter.parseId(resultSet.getString(1)), resultSet.getLong(2));
+                }
+            }
+        } catch (SQLException sqlEx) {
+            logger.error("Failed to load cached profiles", sqlEx);
+        }
+
+        return profiles;
+    }
+
+    public void saveCrackedProfiles(Map<UUID, Long> profiles) {
+        if (profiles.isEmpty()) {
+            return;
+        }
+
+        try (Connection con = dataSource.getConnection();
+             PreparedStatement stmt = con.prepareStatement("REPLACE INTO " + CRACKED_TABLE
+                     + " (`UUID`, `ExpiresAt`) VALUES (?, ?)")) {
+            for (Map.Entry<UUID, Long> entry : profiles.entrySet()) {
+                stmt.setString(1, UUIDTypeAdapter.toMojangId(entry.getKey()));
+                stmt.setLong(2, entry.getValue());
+                stmt.addBatch();
+            }
+
+            stmt.executeBatch();
+        } catch (SQLException sqlEx) {
+            logger.error("Failed to save {} cached profiles", profiles.size(), sqlEx);
+        }
+    }
+
+    private void deleteExpired(Connection con, String table) throws SQLException {
+        try (PreparedStatement stmt = con.prepareStatement("DELETE FROM " + table + " WHERE `ExpiresAt`<=?")) {
+            stmt.setLong(1, System.currentTimeMillis());
+            stmt.executeUpdate();
+        }
+    }
+
+    public SkinCache getCache() {
+        return cache;
     }
 
     public void close() {
+        logger.debug("Closing storage with cache {}", cache);
+        cache.invalidateAll();
+
         if (dataSource != null) {
             dataSource.close();
         }
     }
 
+    private Object toDatabaseId(UUID uuid) {
+        if (binaryUUID) {
+            return UUIDTypeAdapter.toBytes(uuid);
+        }
+
+        return UUIDTypeAdapter.toMojangId(uuid);
+    }
+
+    private UUID fromDatabaseId(ResultSet resultSet, int column) throws SQLException {
+        if (binaryUUID) {
+            return UUIDTypeAdapter.fromBytes(resultSet.getBytes(column));
+        }
+
+        return UUIDTypeAdapter.parseId(resultSet.getString(column));
+    }
+
     private SkinModel parseSkinData(ResultSet resultSet) throws SQLException {
         int skinId = resultSet.getInt(1);
         long timestamp = resultSet.getLong(2);
-        UUID uuid = UUIDTypeAdapter.parseId(resultSet.getString(3));
+        UUID uuid = fromDatabaseId(resultSet, 3);
         String name = resultSet.getString(4);
 
         boolean slimModel = resultSet.getBoolean(5);
@@ -313,6 +893,134 @@ public class SkinStorage {
         String capeUrl = resultSet.getString(7);
 
         byte[] signature = resultSet.getBytes(8);
-        return new SkinModel(skinId, timestamp, uuid, name, slimModel, skinUrl, capeUrl, signature);
+
+        //null for rows that are not filled by the compaction yet
+        String encodedValue = resultSet.getString(9);
+        return new SkinModel(skinId, timestamp, uuid, name, slimModel, skinUrl, capeUrl, signature, encodedValue);
+    }
+
+    private interface CompactionStep {
+
+        /**
+         * @param con connection inside the transaction of this chunk
+         * @param afterCommit tasks to run after the chunk is committed
+         * @return number of processed rows - 0 if there is nothing left
+         */
+        int compact(Connection con, List<Runnable> afterCommit) throws SQLException;
+    }
+
+    /**
+     * Stores skins content addressed: if the profile already has a row with the same textures, this row is reused
+     * and only refreshed with the newer signature. Concurrent inserts from other servers could still create
+     * duplicates, which are merged later by {@link #compact()}.
+     */
+    private class SkinWriter implements AutoCloseable {
+
+        private final PreparedStatement findStmt;
+        private final PreparedStatement refreshStmt;
+        private final PreparedStatement insertStmt;
+
+        SkinWriter(Connection con) throws SQLException {
+            this.findStmt = con.prepareStatement(FIND_SKIN);
+            this.refreshStmt = con.prepareStatement(REFRESH_SKIN);
+            this.insertStmt = con.prepareStatement(INSERT_SKIN, RETURN_GENERATED_KEYS);
+        }
+
+        boolean write(SkinModel skinData, List<Runnable> rollbacks) throws SQLException {
+            Lock saveLock = saveLocks.get(skinData);
+            saveLock.lock();
+            try {
+                if (skinData.isSaved()) {
+                    //skin already saved
+                    return true;
+                }
+
+                int rowId = findExisting(skinData);
+                if (rowId < 0) {
+                    rowId = insert(skinData);
+                }
+
+                if (rowId >= 0) {
+                    int savedId = rowId;
+                    skinData.setRowId(savedId);
+                    rollbacks.add(() -> skinData.compareAndSetRowId(savedId, -1));
+                    return true;
+                }
+            } finally {
+                saveLock.unlock();
+            }
+
+            return false;
+        }
+
+        private int findExisting(SkinModel skinData) throws SQLException {
+            findStmt.setObject(1, toDatabaseId(skinData.getProfileId()));
+            findStmt.setString(2, skinData.getTextureHash());
+
+            int rowId;
+            long storedTimestamp;
+            try (ResultSet resultSet = findStmt.executeQuery()) {
+                if (!resultSet.next()) {
+                    return -1;
+                }
+
+                rowId = resultSet.getInt(1);
+                storedTimestamp = resultSet.getLong(2);
+            }
+
+            if (skinData.getTimestamp() > storedTimestamp) {
+                refreshStmt.setLong(1, skinData.getTimestamp());
+                refreshStmt.setString(2, skinData.getProfileName());
+                refreshStmt.setBytes(3, Base64.getDecoder().decode(skinData.getSignature()));
+                refreshStmt.setString(4, skinData.getEncodedValue());
+                refreshStmt.setInt(5, rowId);
+                refreshStmt.executeUpdate();
+            }
+
+            return rowId;
+        }
+
+        private int insert(SkinModel skinData) throws SQLException {
+            TextureModel skinTexture = skinData.getTextures().get(SKIN);
+            String skinUrl = "";
+            boolean slimModel = false;
+            if (skinTexture != null) {
+                skinUrl = skinTexture.getShortUrl();
+                slimModel = skinTexture.isSlim();
+            }
+
+            TextureModel capeTexture = skinData.getTextures().get(CAPE);
+            String capeUrl = "";
+            if (capeTexture != null) {
+                capeUrl = capeTexture.getShortUrl();
+            }
+
+            insertStmt.setLong(1, skinData.getTimestamp());
+            insertStmt.setObject(2, toDatabaseId(skinData.getProfileId()));
+            insertStmt.setString(3, skinData.getProfileName());
+            insertStmt.setBoolean(4, slimModel);
+            insertStmt.setString(5, skinUrl);
+            insertStmt.setString(6, capeUrl);
+            insertStmt.setBytes(7, Base64.getDecoder().decode(skinData.getSignature()));
+            insertStmt.setString(8, skinData.getTextureHash());
+            insertStmt.setString(9, skinData.getEncodedValue());
+
+            insertStmt.executeUpdate();
+
+            try (ResultSet generatedKeys = insertStmt.getGeneratedKeys()) {
+                if (generatedKeys != null && generatedKeys.next()) {
+                    return generatedKeys.getInt(1);
+                }
+            }
+
+            return -1;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            findStmt.close();
+            refreshStmt.close();
+            insertStmt.close();
+        }
     }
 }
@@ -1,13 +1,17 @@
 package com.github.games647.changeskin.core.message;
 
-import com.google.common.io.ByteArrayDataInput;
 import com.google.common.io.ByteArrayDataOutput;
 
 public interface ChannelMessage {
 
     String getChannelName();
 
-    void readFrom(ByteArrayDataInput in);
+    /**
+     * @return id of this message type in a {@link ChannelProtocol} frame
+     */
+    byte getTypeId();
+
+    void readFrom(FrameInput in);
 
     void writeTo(ByteArrayDataOutput out);
 }
@@ -0,0 +1,136 @@
+package com.github.games647.changeskin.core.message;
+
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Framing of the plugin messages between the proxy and the servers. A frame starts with the protocol version and
+ * the number of messages. Every message is prefixed with its type id and length:
+ *
+ * <pre>
+ * version (byte) | count (unsigned short) | [type id (byte) | length (unsigned short) | payload]...
+ * </pre>
+ *
+ * Many messages of the same channel can be packed into a single frame. Frames of other versions or with invalid
+ * lengths, types or payloads are rejected as a whole without throwing exceptions.
+ */
+public class ChannelProtocol {
+
+    public static final byte VERSION = 1;
+
+    //stay below the limit of server bound plugin messages
+    public static final int MAX_FRAME_SIZE = Short.MAX_VALUE;
+
+    private static final int FRAME_HEADER_SIZE = 3;
+    private static final int MESSAGE_HEADER_SIZE = 3;
+    private static final int MAX_MESSAGES = 0xFFFF;
+
+    /**
+     * @param messages messages of the same type
+     * @return frames with all messages - usually only one
+     */
+    public static List<byte[]> encode(Collection<? extends ChannelMessage> messages) {
+        List<byte[]> frames = new ArrayList<>(1);
+
+        List<byte[]> payloads = new ArrayList<>(messages.size());
+        int frameSize = FRAME_HEADER_SIZE;
+        byte typeId = 0;
+        for (ChannelMessage message : messages) {
+            if (payloads.isEmpty()) {
+                typeId = message.getTypeId();
+            } else if (message.getTypeId() != typeId) {
+                throw new IllegalArgumentException("Cannot mix message types in one frame " + messages);
+            }
+
+            ByteArrayDataOutput out = ByteStreams.newDataOutput();
+            message.writeTo(out);
+            byte[] payload = out.toByteArray();
+
+            int size = MESSAGE_HEADER_SIZE + payload.length;
+            if (FRAME_HEADER_SIZE + size > MAX_FRAME_SIZE) {
+                throw new IllegalArgumentException("Message too large for a single frame " + message);
+            }
+
+            if (frameSize + size > MAX_FRAME_SIZE || payloads.size() == MAX_MESSAGES) {
+                frames.add(writeFrame(typeId, payloads, frameSize));
+                payloads.clear();
+                frameSize = FRAME_HEADER_SIZE;
+            }
+
+            payloads.add(payload);
+            frameSize += size;
+        }
+
+        if (!payloads.isEmpty()) {
+            frames.add(writeFrame(typeId, payloads, frameSize));
+        }
+
+        return frames;
+    }
+
+    /**
+     * @param data received plugin message
+     * @param typeId expected message type of the channel
+     * @param factory creates empty messages for reading
+     * @param <T> message type
+     * @return all messages of the frame or an empty list if the frame is malformed
+     */
+    public static <T extends ChannelMessage> List<T> decode(byte[] data, byte typeId, Supplier<T> factory) {
+        FrameInput in = new FrameInput(data);
+        if (in.readByte() != VERSION) {
+            return Collections.emptyList();
+        }
+
+        int count = in.readUnsignedShort();
+        //every message needs at least its header
+        if (in.isMalformed() || count == 0 || count > in.remaining() / MESSAGE_HEADER_SIZE) {
+            return Collections.emptyList();
+        }
+
+        List<T> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte type = in.readByte();
+            FrameInput payload = in.slice(in.readUnsignedShort());
+            if (in.isMalformed() || type != typeId) {
+                return Collections.emptyList();
+            }
+
+            T message = factory.get();
+            message.readFrom(payload);
+            if (payload.isMalformed() || payload.remaining() != 0) {
+                return Collections.emptyList();
+            }
+
+            messages.add(message);
+        }
+
+        if (in.remaining() != 0) {
+            return Collections.emptyList();
+        }
+
+        return messages;
+    }
+
+    private static byte[] writeFrame(byte typeId, Collection<byte[]> payloads, int frameSize) {
+        ByteArrayDataOutput out = ByteStreams.newDataOutput(frameSize);
+        out.writeByte(VERSION);
+        out.writeShort(payloads.size());
+        for (byte[] payload : payloads) {
+            out.writeByte(typeId);
+            out.writeShort(payload.length);
+            out.write(payload);
+        }
+
+        return out.toByteArray();
+    }
+
+    private ChannelProtocol() {
+        //Utility class
+    }
+}
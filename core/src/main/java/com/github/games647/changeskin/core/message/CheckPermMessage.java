@@ -1,7 +1,5 @@
 package com.github.games647.changeskin.core.message;
 
-import com.github.games647.changeskin.core.model.skin.SkinModel;
-import com.google.common.io.ByteArrayDataInput;
 import com.google.common.io.ByteArrayDataOutput;
 
 import java.util.UUID;
@@ -9,14 +7,15 @@ import java.util.UUID;
 public class CheckPermMessage implements ChannelMessage {
 
     public static final String CHECK_PERM_CHANNEL = "chk-perm";
+    public static final byte TYPE_ID = 2;
 
-    private SkinModel targetSkin;
+    private SkinReference targetSkin;
 
     private UUID receiverUUD;
     private boolean skinPerm;
     private boolean isOp;
 
-    public CheckPermMessage(SkinModel targetSkin, UUID receiverUUD, boolean skinPerm, boolean isOp) {
+    public CheckPermMessage(SkinReference targetSkin, UUID receiverUUD, boolean skinPerm, boolean isOp) {
         this.targetSkin = targetSkin;
         this.receiverUUD = receiverUUD;
         this.skinPerm = skinPerm;
@@ -27,7 +26,7 @@ public class CheckPermMessage implements ChannelMessage {
         //reading mode
     }
 
-    public SkinModel getTargetSkin() {
+    public SkinReference getTargetSkin() {
         return targetSkin;
     }
 
@@ -49,27 +48,26 @@ public class CheckPermMessage implements ChannelMessage {
     }
 
     @Override
-    public void readFrom(ByteArrayDataInput in) {
-        int rowId = in.readInt();
-        String encodedData = in.readUTF();
-        String encodedSignature = in.readUTF();
+    public byte getTypeId() {
+        return TYPE_ID;
+    }
 
-        targetSkin = SkinModel.createSkinFromEncoded(encodedData, encodedSignature);
-        targetSkin.setRowId(rowId);
+    @Override
+    public void readFrom(FrameInput in) {
+        targetSkin = SkinReference.readFrom(in);
 
         //continue on success only
-        receiverUUD = UUID.fromString(in.readUTF());
+        receiverUUD = new UUID(in.readLong(), in.readLong());
         skinPerm = in.readBoolean();
         isOp = in.readBoolean();
     }
 
     @Override
     public void writeTo(ByteArrayDataOutput out) {
-        out.writeInt(targetSkin.getRowId());
-        out.writeUTF(targetSkin.getEncodedValue());
-        out.writeUTF(targetSkin.getSignature());
+        targetSkin.writeTo(out);
 
-        out.writeUTF(receiverUUD.toString());
+        out.writeLong(receiverUUD.getMostSignificantBits());
+        out.writeLong(receiverUUD.getLeastSignificantBits());
         out.writeBoolean(skinPerm);
         out.writeBoolean(isOp);
     }
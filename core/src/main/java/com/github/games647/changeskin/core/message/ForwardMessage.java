@@ -1,11 +1,11 @@
 package com.github.games647.changeskin.core.message;
 
-import com.google.common.io.ByteArrayDataInput;
 import com.google.common.io.ByteArrayDataOutput;
 
 public class ForwardMessage implements ChannelMessage {
 
     public static final String FORWARD_COMMAND_CHANNEL = "cmd-frw";
+    public static final byte TYPE_ID = 1;
 
     private String commandName;
     private String args;
@@ -45,7 +45,12 @@ public class ForwardMessage implements ChannelMessage {
     }
 
     @Override
-    public void readFrom(ByteArrayDataInput in) {
+    public byte getTypeId() {
+        return TYPE_ID;
+    }
+
+    @Override
+    public void readFrom(FrameInput in) {
         commandName = in.readUTF();
         args = in.readUTF();
 
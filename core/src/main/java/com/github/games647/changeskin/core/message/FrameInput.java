@@ -0,0 +1,151 @@
+package com.github.games647.changeskin.core.message;
+
+/**
+ * Bounded reader for the payloads of {@link ChannelProtocol} frames. Reading past the end or invalid strings don't
+ * throw, because plugin messages could be sent by modified clients. Instead the input is marked as malformed and
+ * default values are returned, so the frame can be rejected after reading.
+ */
+public class FrameInput {
+
+    private final byte[] data;
+    private final int end;
+
+    private int position;
+    private boolean malformed;
+
+    public FrameInput(byte[] data) {
+        this(data, 0, data.length);
+    }
+
+    private FrameInput(byte[] data, int offset, int length) {
+        this.data = data;
+        this.position = offset;
+        this.end = offset + length;
+    }
+
+    public boolean isMalformed() {
+        return malformed;
+    }
+
+    /**
+     * Marks the input as invalid, for example if a value is out of range.
+     */
+    public void reject() {
+        malformed = true;
+        position = end;
+    }
+
+    public int remaining() {
+        return end - position;
+    }
+
+    /**
+     * @param length number of bytes
+     * @return input for the next bytes, which are skipped in this input
+     */
+    public FrameInput slice(int length) {
+        if (!ensure(length)) {
+            return new FrameInput(data, end, 0);
+        }
+
+        FrameInput slice = new FrameInput(data, position, length);
+        position += length;
+        return slice;
+    }
+
+    public byte readByte() {
+        if (!ensure(1)) {
+            return 0;
+        }
+
+        return data[position++];
+    }
+
+    public int readUnsignedByte() {
+        return readByte() & 0xFF;
+    }
+
+    public boolean readBoolean() {
+        return readByte() != 0;
+    }
+
+    public int readUnsignedShort() {
+        if (!ensure(2)) {
+            return 0;
+        }
+
+        return (data[position++] & 0xFF) << 8 | data[position++] & 0xFF;
+    }
+
+    public int readInt() {
+        if (!ensure(4)) {
+            return 0;
+        }
+
+        return (data[position++] & 0xFF) << 24
+                | (data[position++] & 0xFF) << 16
+                | (data[position++] & 0xFF) << 8
+                | data[position++] & 0xFF;
+    }
+
+    public long readLong() {
+        return (long) readInt() << 32 | readInt() & 0xFFFFFFFFL;
+    }
+
+    public byte[] readBytes(int length) {
+        if (!ensure(length)) {
+            return new byte[0];
+        }
+
+        byte[] bytes = new byte[length];
+        System.arraycopy(data, position, bytes, 0, length);
+        position += length;
+        return bytes;
+    }
+
+    /**
+     * @return string in the modified UTF-8 format of {@link java.io.DataOutput#writeUTF(String)}
+     */
+    public String readUTF() {
+        int length = readUnsignedShort();
+        if (!ensure(length)) {
+            return "";
+        }
+
+        char[] chars = new char[length];
+        int count = 0;
+
+        int stringEnd = position + length;
+        while (position < stringEnd) {
+            int first = data[position++] & 0xFF;
+            if (first < 0x80) {
+                chars[count++] = (char) first;
+            } else if ((first & 0xE0) == 0xC0 && position < stringEnd && isContinuation(data[position])) {
+                chars[count++] = (char) ((first & 0x1F) << 6 | data[position++] & 0x3F);
+            } else if ((first & 0xF0) == 0xE0 && position + 1 < stringEnd
+                    && isContinuation(data[position]) && isContinuation(data[position + 1])) {
+                chars[count++] = (char) ((first & 0x0F) << 12
+                        | (data[position++] & 0x3F) << 6
+                        | data[position++] & 0x3F);
+            } else {
+                reject();
+                return "";
+            }
+        }
+
+        return new String(chars, 0, count);
+    }
+
+    private static boolean isContinuation(byte value) {
+        return (value & 0xC0) == 0x80;
+    }
+
+    private boolean ensure(int length) {
+        if (length > end - position) {
+            reject();
+            return false;
+        }
+
+        return true;
+    }
+}
@@ -1,7 +1,5 @@
 package com.github.games647.changeskin.core.message;
 
-import com.github.games647.changeskin.core.model.skin.SkinModel;
-import com.google.common.io.ByteArrayDataInput;
 import com.google.common.io.ByteArrayDataOutput;
 
 import java.util.UUID;
@@ -9,12 +7,13 @@ import java.util.UUID;
 public class PermResultMessage implements ChannelMessage {
 
     public static final String PERMISSION_RESULT_CHANNEL = "perm-res";
+    public static final byte TYPE_ID = 3;
 
     private boolean allowed;
-    private SkinModel skin;
+    private SkinReference skin;
     private UUID receiverUUID;
 
-    public PermResultMessage(boolean success, SkinModel skin, UUID receiverUUID) {
+    public PermResultMessage(boolean success, SkinReference skin, UUID receiverUUID) {
         this.allowed = success;
         this.skin = skin;
         this.receiverUUID = receiverUUID;
@@ -28,7 +27,7 @@ public class PermResultMessage implements ChannelMessage {
         return allowed;
     }
 
-    public SkinModel getSkin() {
+    public SkinReference getSkin() {
         return skin;
     }
 
@@ -42,27 +41,25 @@ public class PermResultMessage implements ChannelMessage {
     }
 
     @Override
-    public void readFrom(ByteArrayDataInput in) {
-        allowed = in.readBoolean();
-
-        int rowId = in.readInt();
-        String encodedValue = in.readUTF();
-        String encodedSignature = in.readUTF();
+    public byte getTypeId() {
+        return TYPE_ID;
+    }
 
-        skin = SkinModel.createSkinFromEncoded(encodedValue, encodedSignature);
-        skin.setRowId(rowId);
+    @Override
+    public void readFrom(FrameInput in) {
+        allowed = in.readBoolean();
 
-        receiverUUID = UUID.fromString(in.readUTF());
+        skin = SkinReference.readFrom(in);
+        receiverUUID = new UUID(in.readLong(), in.readLong());
     }
 
     @Override
     public void writeTo(ByteArrayDataOutput out) {
         out.writeBoolean(allowed);
 
-        out.writeInt(skin.getRowId());
-        out.writeUTF(skin.getEncodedValue());
-        out.writeUTF(skin.getSignature());
-        out.writeUTF(receiverUUID.toString());
+        skin.writeTo(out);
+        out.writeLong(receiverUUID.getMostSignificantBits());
+        out.writeLong(receiverUUID.getLeastSignificantBits());
     }
 
     @Override
@@ -0,0 +1,128 @@
+package com.github.games647.changeskin.core.message;
+
+import com.github.games647.changeskin.core.model.skin.SkinModel;
+import com.google.common.io.ByteArrayDataOutput;
+
+import java.util.Base64;
+import java.util.UUID;
+import java.util.function.IntFunction;
+
+/**
+ * Compact wire form of a skin inside plugin messages. Saved skins are only referenced by their row id, because the
+ * proxy resolves them from its own storage on the round trip. Other skins are sent as raw bytes instead of Base64 and
+ * decoded only if the skin is requested. The profile id is always included for the permission checks.
+ */
+public class SkinReference {
+
+    private static final byte ROW_ID = 1;
+    private static final byte RAW = 2;
+
+    private final int rowId;
+    private final UUID profileId;
+
+    //only set for raw references
+    private final byte[] value;
+    private final byte[] signature;
+
+    //racy, but the result is always the same
+    private SkinModel skin;
+
+    private SkinReference(int rowId, UUID profileId, byte[] value, byte[] signature, SkinModel skin) {
+        this.rowId = rowId;
+        this.profileId = profileId;
+        this.value = value;
+        this.signature = signature;
+        this.skin = skin;
+    }
+
+    public static SkinReference of(SkinModel skin) {
+        if (skin.isSaved()) {
+            return new SkinReference(skin.getRowId(), skin.getProfileId(), null, null, skin);
+        }
+
+        Base64.Decoder decoder = Base64.getDecoder();
+        byte[] value = decoder.decode(skin.getEncodedValue());
+        byte[] signature = decoder.decode(skin.getSignature());
+        return new SkinReference(-1, skin.getProfileId(), value, signature, skin);
+    }
+
+    public static SkinReference readFrom(FrameInput in) {
+        byte type = in.readByte();
+        int rowId = in.readInt();
+        UUID profileId = new UUID(in.readLong(), in.readLong());
+        switch (type) {
+            case ROW_ID:
+                return new SkinReference(rowId, profileId, null, null, null);
+            case RAW:
+                byte[] value = readBytes(in);
+                byte[] signature = readBytes(in);
+                return new SkinReference(rowId, profileId, value, signature, null);
+            default:
+                in.reject();
+                return null;
+        }
+    }
+
+    public void writeTo(ByteArrayDataOutput out) {
+        out.writeByte(isRaw() ? RAW : ROW_ID);
+        out.writeInt(rowId);
+        out.writeLong(profileId.getMostSignificantBits());
+        out.writeLong(profileId.getLeastSignificantBits());
+        if (isRaw()) {
+            writeBytes(out, value);
+            writeBytes(out, signature);
+        }
+    }
+
+    public int getRowId() {
+        return rowId;
+    }
+
+    public UUID getProfileId() {
+        return profileId;
+    }
+
+    public boolean isRaw() {
+        return value != null;
+    }
+
+    /**
+     * @param storage lookup of saved skins by their row id
+     * @return the referenced skin or null if the row id is unknown
+     */
+    public SkinModel resolve(IntFunction<SkinModel> storage) {
+        if (skin == null) {
+            if (isRaw()) {
+                Base64.Encoder encoder = Base64.getEncoder();
+                String encodedValue = encoder.encodeToString(value);
+                skin = SkinModel.createSkinFromEncoded(encodedValue, encoder.encodeToString(signature));
+            } else {
+                skin = storage.apply(rowId);
+            }
+        }
+
+        return skin;
+    }
+
+    private static byte[] readBytes(FrameInput in) {
+        return in.readBytes(in.readUnsignedShort());
+    }
+
+    private static void writeBytes(ByteArrayDataOutput out, byte[] bytes) {
+        if (bytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("Skin data too long " + bytes.length);
+        }
+
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + '{' +
+                "rowId=" + rowId +
+                ", profileId=" + profileId +
+                ", raw=" + isRaw() +
+                '}';
+    }
+}
@@ -1,11 +1,11 @@
 package com.github.games647.changeskin.core.message;
 
-import com.google.common.io.ByteArrayDataInput;
 import com.google.common.io.ByteArrayDataOutput;
 
 public class SkinUpdateMessage implements ChannelMessage {
 
     public static final String UPDATE_SKIN_CHANNEL = "skin-upd";
+    public static final byte TYPE_ID = 4;
 
     private String playerName;
 
@@ -27,7 +27,12 @@ public class SkinUpdateMessage implements ChannelMessage {
     }
 
     @Override
-    public void readFrom(ByteArrayDataInput in) {
+    public byte getTypeId() {
+        return TYPE_ID;
+    }
+
+    @Override
+    public void readFrom(FrameInput in) {
         playerName = in.readUTF();
     }
 
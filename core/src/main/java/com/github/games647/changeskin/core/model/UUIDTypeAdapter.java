@@ -6,6 +6,7 @@ import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonWriter;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.UUID;
 import java.util.regex.Pattern;
 
@@ -14,6 +15,17 @@ public class UUIDTypeAdapter extends TypeAdapter<UUID> {
     public static final Pattern UUID_PATTERN = Pattern.compile("(\\w{8})(\\w{4})(\\w{4})(\\w{4})(\\w{12})");
 
     public static UUID parseId(String withoutDashes) {
+        if (withoutDashes.length() == 32) {
+            //skip the regex for the common format of the Mojang API
+            try {
+                long mostSigBits = Long.parseUnsignedLong(withoutDashes.substring(0, 16), 16);
+                long leastSigBits = Long.parseUnsignedLong(withoutDashes.substring(16), 16);
+                return new UUID(mostSigBits, leastSigBits);
+            } catch (NumberFormatException numberFormatException) {
+                throw new IllegalArgumentException("Invalid UUID string: " + withoutDashes, numberFormatException);
+            }
+        }
+
         return UUID.fromString(UUID_PATTERN.matcher(withoutDashes).replaceAll("$1-$2-$3-$4-$5"));
     }
 
@@ -21,6 +33,18 @@ public class UUIDTypeAdapter extends TypeAdapter<UUID> {
         return uuid.toString().replace("-", "");
     }
 
+    public static byte[] toBytes(UUID uuid) {
+        return ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+
+    public static UUID fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+
     public void write(JsonWriter out, UUID value) throws IOException {
         TypeAdapters.STRING.write(out, toMojangId(value));
     }
@@ -4,23 +4,25 @@ import com.github.games647.changeskin.core.model.skin.SkinModel;
 
 import java.util.Optional;
 import java.util.UUID;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 public class UserPreference {
 
+    private static final AtomicIntegerFieldUpdater<UserPreference> ROW_ID_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(UserPreference.class, "rowId");
+
     private final UUID uuid;
-    private final ReadWriteLock lock = new ReentrantReadWriteLock();
 
-    private int rowId;
-    private SkinModel targetSkin;
-    private boolean keepSkin;
+    //the fields are independent, so volatile is enough - saves are serialized by the storage
+    private volatile int rowId;
+    //kept wrapped, because it's read on every login
+    private volatile Optional<SkinModel> targetSkin;
+    private volatile boolean keepSkin;
 
     public UserPreference(int rowId, UUID uuid, SkinModel targetSkin, boolean keepSkin) {
         this.rowId = rowId;
         this.uuid = uuid;
-        this.targetSkin = targetSkin;
+        this.targetSkin = Optional.ofNullable(targetSkin);
         this.keepSkin = keepSkin;
     }
 
@@ -32,85 +34,50 @@ public class UserPreference {
         return uuid;
     }
 
-    public Lock getSaveLock() {
-        return lock.writeLock();
-    }
-
     public int getRowId() {
-        lock.readLock().lock();
-        try {
-            return rowId;
-        } finally {
-            lock.readLock().unlock();
-        }
+        return rowId;
     }
 
     public void setRowId(int rowId) {
-        lock.writeLock().lock();
-        try {
-            this.rowId = rowId;
-        } finally {
-            lock.writeLock().unlock();
-        }
+        this.rowId = rowId;
+    }
+
+    /**
+     * @param expect expected row id
+     * @param update new row id
+     * @return true if the row id was the expected one and is updated
+     */
+    public boolean compareAndSetRowId(int expect, int update) {
+        return ROW_ID_UPDATER.compareAndSet(this, expect, update);
     }
 
     public boolean isSaved() {
-        lock.readLock().lock();
-        try {
-            return rowId >= 0;
-        } finally {
-            lock.readLock().unlock();
-        }
+        return rowId >= 0;
     }
 
     public boolean isKeepSkin() {
-        lock.readLock().lock();
-        try {
-            return keepSkin;
-        } finally {
-            lock.readLock().unlock();
-        }
+        return keepSkin;
     }
 
     public void setKeepSkin(boolean keepSkin) {
-        lock.writeLock().lock();
-        try {
-            this.keepSkin = keepSkin;
-        } finally {
-            lock.writeLock().unlock();
-        }
+        this.keepSkin = keepSkin;
     }
 
     public Optional<SkinModel> getTargetSkin() {
-        lock.readLock().lock();
-        try {
-            return Optional.ofNullable(targetSkin);
-        } finally {
-            lock.readLock().unlock();
-        }
+        return targetSkin;
     }
 
     public void setTargetSkin(SkinModel targetSkin) {
-        lock.writeLock().lock();
-        try {
-            this.targetSkin = targetSkin;
-        } finally {
-            lock.writeLock().unlock();
-        }
+        this.targetSkin = Optional.ofNullable(targetSkin);
     }
 
     @Override
     public String toString() {
-        lock.readLock().lock();
-        try {
-            return this.getClass().getSimpleName() + '{' +
-                    "rowId=" + rowId +
-                    ", uuid=" + uuid +
-                    ", targetSkin=" + targetSkin +
-                    ", keepSkin=" + keepSkin +
-                    '}';
-        } finally {
-            lock.readLock().unlock();
-        }
+        return this.getClass().getSimpleName() + '{' +
+                "rowId=" + rowId +
+                ", uuid=" + uuid +
+                ", targetSkin=" + targetSkin.orElse(null) +
+                ", keepSkin=" + keepSkin +
+                '}';
     }
 }
@@ -1,6 +1,8 @@
 package com.github.games647.changeskin.core.model.skin;
 
 import com.github.games647.changeskin.core.model.UUIDTypeAdapter;
+import com.google.common.base.Strings;
+import com.google.common.hash.Hashing;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 
@@ -12,18 +14,18 @@ import java.util.EnumMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 public class SkinModel {
 
     private static final Gson gson = new GsonBuilder()
             .registerTypeAdapter(UUID.class, new UUIDTypeAdapter())
+            .registerTypeAdapter(TextureModel.class, new TextureAdapter())
             .create();
 
     private static final Gson prettyGson = new GsonBuilder()
             .registerTypeAdapter(UUID.class, new UUIDTypeAdapter())
+            .registerTypeAdapter(TextureModel.class, new TextureAdapter())
             .setPrettyPrinting()
             .create();
 
@@ -34,12 +36,17 @@ public class SkinModel {
     private static final long LEGACY_TIMESTAMP = 1516492800000L;
     private static final long PRETTY_TIMESTAMP = 1587933311016L;
 
-    private transient int rowId;
+    private static final AtomicIntegerFieldUpdater<SkinModel> ROW_ID_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(SkinModel.class, "rowId");
+
+    //cached skins are shared by many players, so this is lock-free
+    private transient volatile int rowId;
+
+    //both encodings are created lazily for skins loaded from the database - racy, but the result is always the same
     private transient String encodedValue;
     private transient String encodedSignature;
-
-    //this can be null if initialized by gson
-    private transient ReadWriteLock lock = new ReentrantReadWriteLock();
+    private transient byte[] signature;
+    private transient String textureHash;
 
     //the order of these fields are relevant
     private final long timestamp;
@@ -51,6 +58,14 @@ public class SkinModel {
 
     public SkinModel(int rowId, long timestamp, UUID uuid, String name
             , boolean slimModel, String skinURL, String capeURL, byte[] signature) {
+        this(rowId, timestamp, uuid, name, slimModel, skinURL, capeURL, signature, null);
+    }
+
+    /**
+     * @param encodedValue the stored textures property or null to serialize it on first use
+     */
+    public SkinModel(int rowId, long timestamp, UUID uuid, String name
+            , boolean slimModel, String skinURL, String capeURL, byte[] signature, String encodedValue) {
         this.rowId = rowId;
 
         this.timestamp = timestamp;
@@ -58,65 +73,54 @@ public class SkinModel {
         this.profileName = name;
         
         if (skinURL != null && !skinURL.isEmpty()) {
-            textures.put(TextureType.SKIN, new TextureModel(skinURL, slimModel));
+            textures.put(TextureType.SKIN, TextureModel.of(skinURL, slimModel));
         }
 
         if (capeURL != null && !capeURL.isEmpty()) {
-            textures.put(TextureType.CAPE, new TextureModel(capeURL));
+            textures.put(TextureType.CAPE, TextureModel.of(capeURL, false));
         }
         
-        this.encodedSignature = Base64.getEncoder().encodeToString(signature);
-        this.encodedValue = serializeData();
+        this.signature = signature;
+        this.encodedValue = encodedValue;
     }
 
-    public static SkinModel createSkinFromEncoded(String encodedData, String signature) {
-        byte[] data = Base64.getDecoder().decode(encodedData);
-        String rawJson = new String(data, StandardCharsets.UTF_8);
+    SkinModel(long timestamp, UUID profileId, String profileName, Map<TextureType, TextureModel> textures
+            , String encodedValue, String encodedSignature) {
+        this.rowId = -1;
+
+        this.timestamp = timestamp;
+        this.profileId = Objects.requireNonNull(profileId);
+        this.profileName = profileName;
+        this.textures.putAll(textures);
 
-        SkinModel skinModel = gson.fromJson(rawJson, SkinModel.class);
-        skinModel.setRowId(-1);
-        skinModel.encodedSignature = signature;
-        skinModel.encodedValue = encodedData;
-        Objects.requireNonNull(skinModel.getProfileId());
-        return skinModel;
+        //keep the original encoding, because the signature is only valid for it
+        this.encodedValue = encodedValue;
+        this.encodedSignature = encodedSignature;
+    }
+
+    public static SkinModel createSkinFromEncoded(String encodedData, String signature) {
+        return SkinModelParser.parseTextures(encodedData, signature);
     }
 
     public int getRowId() {
-        Lock lock = getLazyLock().readLock();
-        lock.lock();
-        try {
-            return rowId;
-        } finally {
-            lock.unlock();
-        }
+        return rowId;
     }
 
     public boolean isSaved() {
-        Lock lock = getLazyLock().readLock();
-        lock.lock();
-        try {
-            return rowId >= 0;
-        } finally {
-            lock.unlock();
-        }
+        return rowId >= 0;
     }
 
     public void setRowId(int rowId) {
-        Lock lock = getLazyLock().writeLock();
-        lock.lock();
-        try {
-            this.rowId = rowId;
-        } finally {
-            lock.unlock();
-        }
+        this.rowId = rowId;
     }
 
-    private synchronized ReadWriteLock getLazyLock() {
-        if (lock == null) {
-            lock = new ReentrantReadWriteLock();
-        }
-
-        return lock;
+    /**
+     * @param expect expected row id
+     * @param update new row id
+     * @return true if the row id was the expected one and is updated
+     */
+    public boolean compareAndSetRowId(int expect, int update) {
+        return ROW_ID_UPDATER.compareAndSet(this, expect, update);
     }
 
     public boolean isOutdated(Duration autoUpdateDiff) {
@@ -124,15 +128,19 @@ public class SkinModel {
         return !autoUpdateDiff.isNegative() && difference.compareTo(autoUpdateDiff) >= 0;
     }
 
-    public Lock getSaveLock() {
-        return getLazyLock().writeLock();
-    }
-
     public String getEncodedValue() {
+        if (encodedValue == null) {
+            encodedValue = serializeData();
+        }
+
         return encodedValue;
     }
 
     public String getSignature() {
+        if (encodedSignature == null) {
+            encodedSignature = Base64.getEncoder().encodeToString(signature);
+        }
+
         return encodedSignature;
     }
 
@@ -152,6 +160,34 @@ public class SkinModel {
         return textures;
     }
 
+    /**
+     * @return hash of the texture content. Skins with the same hash differ only in their signature and timestamp.
+     */
+    public String getTextureHash() {
+        //racy, but the result is always the same
+        if (textureHash == null) {
+            TextureModel skinTexture = textures.get(TextureType.SKIN);
+            TextureModel capeTexture = textures.get(TextureType.CAPE);
+
+            String skinUrl = skinTexture == null ? "" : skinTexture.getShortUrl();
+            boolean slimModel = skinTexture != null && skinTexture.isSlim();
+            String capeUrl = capeTexture == null ? "" : capeTexture.getShortUrl();
+            textureHash = hashTextures(skinUrl, capeUrl, slimModel);
+        }
+
+        return textureHash;
+    }
+
+    public static String hashTextures(String skinUrl, String capeUrl, boolean slimModel) {
+        return Hashing.sha256().newHasher()
+                .putString(Strings.nullToEmpty(skinUrl), StandardCharsets.UTF_8)
+                .putByte((byte) 0)
+                .putString(Strings.nullToEmpty(capeUrl), StandardCharsets.UTF_8)
+                .putByte((byte) 0)
+                .putBoolean(slimModel)
+                .hash().toString();
+    }
+
     private String serializeData() {
         String json;
 
@@ -171,19 +207,10 @@ public class SkinModel {
 
     @Override
     public String toString() {
-        int rowId;
-
-        getLazyLock().readLock().lock();
-        try {
-            rowId = this.rowId;
-        } finally {
-            getLazyLock().readLock().unlock();
-        }
-
         return this.getClass().getSimpleName() + '{' +
                 "rowId=" + rowId +
-                ", encodedValue='" + encodedValue + '\'' +
-                ", encodedSignature='" + encodedSignature + '\'' +
+                ", encodedValue='" + getEncodedValue() + '\'' +
+                ", encodedSignature='" + getSignature() + '\'' +
                 ", timestamp=" + timestamp +
                 ", profileId=" + profileId +
                 ", profileName='" + profileName + '\'' +
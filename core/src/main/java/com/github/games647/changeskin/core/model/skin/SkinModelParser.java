@@ -0,0 +1,219 @@
+package com.github.games647.changeskin.core.model.skin;
+
+import com.github.games647.changeskin.core.model.UUIDTypeAdapter;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Streaming parser for the profile responses of the session server and the textures property inside them. Only the
+ * fields of {@link SkinModel} are read and everything else is skipped, so there is no reflection or intermediate
+ * tree. Like Gson, failures are reported as {@link JsonParseException}.
+ */
+public class SkinModelParser {
+
+    private static final TextureType[] TEXTURE_TYPES = TextureType.values();
+
+    /**
+     * Parses a profile response like {@code {"id": "...", "name": "...", "properties": [...]}}.
+     *
+     * @param reader response body
+     * @return the skin from the textures property or empty if the profile has none
+     */
+    public static Optional<SkinModel> parseProfile(Reader reader) {
+        try {
+            JsonReader in = new JsonReader(reader);
+
+            Optional<SkinModel> skin = Optional.empty();
+            in.beginObject();
+            while (in.hasNext()) {
+                if ("properties".equals(in.nextName())) {
+                    skin = readProperties(in);
+                } else {
+                    in.skipValue();
+                }
+            }
+
+            in.endObject();
+            return skin;
+        } catch (MalformedJsonException | IllegalStateException | IllegalArgumentException ex) {
+            throw new JsonSyntaxException(ex);
+        } catch (IOException ioEx) {
+            throw new JsonIOException(ioEx);
+        }
+    }
+
+    /**
+     * Parses the Base64 encoded textures property.
+     *
+     * @param encodedValue Base64 encoded json
+     * @param signature Base64 encoded signature of the value
+     * @return the decoded skin
+     */
+    public static SkinModel parseTextures(String encodedValue, String signature) {
+        byte[] data = Base64.getDecoder().decode(encodedValue);
+
+        long timestamp = 0;
+        UUID profileId = null;
+        String profileName = null;
+        Map<TextureType, TextureModel> textures = new EnumMap<>(TextureType.class);
+
+        try (JsonReader in = new JsonReader(new InputStreamReader(new ByteArrayInputStream(data),
+                StandardCharsets.UTF_8))) {
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "timestamp":
+                        timestamp = in.nextLong();
+                        break;
+                    case "profileId":
+                        profileId = UUIDTypeAdapter.parseId(in.nextString());
+                        break;
+                    case "profileName":
+                        profileName = in.nextString();
+                        break;
+                    case "textures":
+                        readTextures(in, textures);
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+
+            in.endObject();
+        } catch (MalformedJsonException | IllegalStateException | IllegalArgumentException ex) {
+            throw new JsonSyntaxException(ex);
+        } catch (IOException ioEx) {
+            //only in memory
+            throw new JsonIOException(ioEx);
+        }
+
+        if (profileId == null) {
+            throw new JsonSyntaxException("Missing profile id in textures " + encodedValue);
+        }
+
+        return new SkinModel(timestamp, profileId, profileName, textures, encodedValue, signature);
+    }
+
+    private static Optional<SkinModel> readProperties(JsonReader in) throws IOException {
+        SkinModel skin = null;
+
+        in.beginArray();
+        while (in.hasNext()) {
+            String name = null;
+            String value = null;
+            String signature = null;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "name":
+                        name = in.nextString();
+                        break;
+                    case "value":
+                        value = in.nextString();
+                        break;
+                    case "signature":
+                        signature = in.nextString();
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+
+            in.endObject();
+            if (skin == null && value != null && (name == null || SkinProperty.SKIN_KEY.equals(name))) {
+                //unsigned textures couldn't be applied - the profile was requested without unsigned=false
+                if (signature == null) {
+                    throw new JsonSyntaxException("Missing signature of the textures property");
+                }
+
+                skin = parseTextures(value, signature);
+            }
+        }
+
+        in.endArray();
+        return Optional.ofNullable(skin);
+    }
+
+    private static void readTextures(JsonReader in, Map<TextureType, TextureModel> textures) throws IOException {
+        in.beginObject();
+        while (in.hasNext()) {
+            TextureType type = parseType(in.nextName());
+            if (type == null) {
+                in.skipValue();
+                continue;
+            }
+
+            String url = null;
+            String model = null;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "url":
+                        url = in.nextString();
+                        break;
+                    case "metadata":
+                        model = readModel(in);
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+
+            in.endObject();
+            if (url != null) {
+                textures.put(type, TextureModel.fromUrl(url, model));
+            }
+        }
+
+        in.endObject();
+    }
+
+    private static String readModel(JsonReader in) throws IOException {
+        String model = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            if ("model".equals(in.nextName())) {
+                model = in.nextString();
+            } else {
+                in.skipValue();
+            }
+        }
+
+        in.endObject();
+        return model;
+    }
+
+    private static TextureType parseType(String name) {
+        for (TextureType type : TEXTURE_TYPES) {
+            if (type.name().equals(name)) {
+                return type;
+            }
+        }
+
+        return null;
+    }
+
+    private SkinModelParser() {
+        //Utility class
+    }
+}
@@ -0,0 +1,29 @@
+package com.github.games647.changeskin.core.model.skin;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSerializationContext;
+import com.google.gson.JsonSerializer;
+
+import java.lang.reflect.Type;
+
+/**
+ * Writes the texture in the current format of Mojang: url followed by the metadata.
+ */
+public class TextureAdapter implements JsonSerializer<TextureModel> {
+
+    @Override
+    public JsonElement serialize(TextureModel src, Type typeOfSrc, JsonSerializationContext context) {
+        JsonObject skin = new JsonObject();
+        skin.addProperty("url", src.getUrl());
+
+        if (src.isSlim()) {
+            JsonObject metadata = new JsonObject();
+            metadata.add("model", new JsonPrimitive(src.getModel()));
+            skin.add("metadata", metadata);
+        }
+
+        return skin;
+    }
+}
@@ -1,44 +1,107 @@
 package com.github.games647.changeskin.core.model.skin;
 
-import java.util.Collections;
-import java.util.Map;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+import java.util.Objects;
 
 public class TextureModel {
 
     private static final String URL_PREFIX = "http://textures.minecraft.net/texture/";
+    private static final String SLIM_MODEL = "slim";
 
-    private final String url;
-    private Map<String, String> metadata;
+    //skins of many players and rows share the same textures
+    private static final Interner<TextureModel> INTERNER = Interners.newWeakInterner();
 
-    public TextureModel(String shortUrl, boolean slimModel) {
-        this.url = URL_PREFIX + shortUrl;
+    //the full url is only built on demand, because the prefix is always the same
+    private final String baseUrl;
+    private final String shortUrl;
+    private final String model;
 
-        if (slimModel) {
-            metadata = Collections.singletonMap("model", "slim");
-        }
+    public TextureModel(String shortUrl, boolean slimModel) {
+        this(URL_PREFIX, shortUrl, slimModel ? SLIM_MODEL : null);
     }
 
     public TextureModel(String shortUrl) {
         this(shortUrl, false);
     }
 
+    private TextureModel(String baseUrl, String shortUrl, String model) {
+        this.baseUrl = baseUrl;
+        this.shortUrl = Objects.requireNonNull(shortUrl);
+        this.model = SLIM_MODEL.equals(model) ? SLIM_MODEL : model;
+    }
+
+    /**
+     * @param shortUrl texture hash
+     * @param slimModel true for the slim arms model
+     * @return the shared instance of this texture
+     */
+    public static TextureModel of(String shortUrl, boolean slimModel) {
+        return INTERNER.intern(new TextureModel(shortUrl, slimModel));
+    }
+
+    /**
+     * @param url full texture url
+     * @param model model from the metadata or null
+     * @return the shared instance of this texture
+     */
+    static TextureModel fromUrl(String url, String model) {
+        TextureModel texture;
+        if (url.startsWith(URL_PREFIX)) {
+            texture = new TextureModel(URL_PREFIX, url.substring(URL_PREFIX.length()), model);
+        } else {
+            //keep foreign urls complete
+            texture = new TextureModel("", url, model);
+        }
+
+        return INTERNER.intern(texture);
+    }
+
     public boolean isSlim() {
-        return metadata != null && metadata.containsKey("model");
+        return model != null;
+    }
+
+    /**
+     * @return model from the metadata or null for the default one
+     */
+    public String getModel() {
+        return model;
     }
 
     public String getUrl() {
-        return url;
+        return baseUrl + shortUrl;
     }
 
     public String getShortUrl() {
-        return url.replace(URL_PREFIX, "");
+        return shortUrl;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+
+        if (!(other instanceof TextureModel)) {
+            return false;
+        }
+
+        TextureModel texture = (TextureModel) other;
+        return shortUrl.equals(texture.shortUrl) && baseUrl.equals(texture.baseUrl)
+                && Objects.equals(model, texture.model);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(baseUrl, shortUrl, model);
     }
 
     @Override
     public String toString() {
         return this.getClass().getSimpleName() + '{' +
-                "url='" + url + '\'' +
-                ", metadata=" + metadata +
+                "url='" + getUrl() + '\'' +
+                ", model=" + model +
                 '}';
     }
 }
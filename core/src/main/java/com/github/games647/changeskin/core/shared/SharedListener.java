@@ -1,15 +1,19 @@
 package com.github.games647.changeskin.core.shared;
 
 import com.github.games647.changeskin.core.ChangeSkinCore;
-import com.github.games647.changeskin.core.NotPremiumException;
-import com.github.games647.changeskin.core.RateLimitException;
 import com.github.games647.changeskin.core.model.UserPreference;
 import com.github.games647.changeskin.core.model.skin.SkinModel;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 
 public abstract class SharedListener {
 
@@ -19,36 +23,98 @@ public abstract class SharedListener {
         this.core = core;
     }
 
-    protected boolean refetchSkin(String playerName, UserPreference preferences) {
+    /**
+     * @return time until the Mojang requests of a login starting now are given up
+     */
+    protected long getLoginDeadline() {
+        return System.nanoTime() + core.getLoginTimeout().toNanos();
+    }
+
+    /**
+     * Starts the name resolution for {@link #refetchSkin(String, CompletableFuture, long, UserPreference)} early if
+     * the cached preferences show that it will be needed. Called before loading the preferences, so the request
+     * overlaps the database lookup. Players who have a skin or aren't cached don't spend any Mojang requests here.
+     *
+     * @param playerId id of the joining player
+     * @param playerName name of the joining player
+     * @return future with the premium uuid of this name or null if the lookup is left to refetchSkin
+     */
+    protected CompletableFuture<Optional<UUID>> prefetchOwner(UUID playerId, String playerName) {
+        UserPreference cached = core.getStorage().getCache().getPreferences(playerId);
+        if (cached == null || cached.getTargetSkin().isPresent()) {
+            return null;
+        }
+
+        return resolveOwner(playerName);
+    }
+
+    private CompletableFuture<Optional<UUID>> resolveOwner(String playerName) {
+        if (!core.getConfig().getBoolean("restoreSkins") || core.getCrackedNames().containsKey(playerName)) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+
         UUID ownerUUID = core.getUuidCache().get(playerName);
-        if (ownerUUID == null && !core.getCrackedNames().containsKey(playerName)) {
-            try {
-                Optional<UUID> optUUID = core.getSkinApi().getUUID(playerName);
-                if (optUUID.isPresent()) {
-                    ownerUUID = optUUID.get();
-                }
-            } catch (NotPremiumException ex) {
-                core.getCrackedNames().put(playerName, new Object());
-            } catch (RateLimitException ex) {
-                //ignore
-            }
+        if (ownerUUID != null) {
+            return CompletableFuture.completedFuture(Optional.of(ownerUUID));
         }
 
+        //joins the lookups of other players logging in at the same time
+        return core.getNameResolver().resolve(playerName);
+    }
+
+    /**
+     * @param playerName name of the joining player
+     * @param owner from {@link #prefetchOwner(UUID, String)}
+     * @param deadline from {@link #getLoginDeadline()}
+     * @param preferences preferences of the joining player
+     * @return true if a skin was found in time
+     */
+    protected boolean refetchSkin(String playerName, CompletableFuture<Optional<UUID>> owner, long deadline
+            , UserPreference preferences) {
+        if (owner == null) {
+            owner = resolveOwner(playerName);
+        }
+
+        UUID ownerUUID = await(owner, deadline).flatMap(Function.identity()).orElse(null);
         if (ownerUUID != null) {
             core.getUuidCache().put(playerName, ownerUUID);
-            SkinModel storedSkin = core.checkAutoUpdate(core.getStorage().getSkin(ownerUUID));
-            if (storedSkin == null) {
-                storedSkin = core.getSkinApi().downloadSkin(ownerUUID).orElse(null);
+
+            //only a missing skin is worth waiting for - an outdated one is refreshed in the background
+            SkinModel targetSkin = core.checkAutoUpdate(core.getStorage().getSkin(ownerUUID));
+            if (targetSkin == null) {
+                targetSkin = await(core.getSkinApi().downloadSkinAsync(ownerUUID), deadline)
+                        .flatMap(Function.identity()).orElse(null);
             }
 
-            preferences.setTargetSkin(storedSkin);
-            save(preferences);
-            return true;
+            if (targetSkin != null) {
+                preferences.setTargetSkin(targetSkin);
+                save(preferences);
+                return true;
+            }
         }
 
         return false;
     }
 
+    private <T> Optional<T> await(CompletableFuture<T> future, long deadline) {
+        try {
+            long remaining = Math.max(deadline - System.nanoTime(), 0);
+            return Optional.ofNullable(future.get(remaining, TimeUnit.NANOSECONDS));
+        } catch (TimeoutException timeoutEx) {
+            //the request isn't cancelled, so lookups of the same data still share it
+            core.getLogger().warn("Mojang didn't respond within the login timeout. Using the stored or default skin");
+        } catch (InterruptedException interruptedEx) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            //ignore rate limits
+            if (ex.getCause() instanceof IOException) {
+                core.getLogger().error("Failed to fetch skin data for login", ex.getCause());
+            }
+        }
+
+        return Optional.empty();
+    }
+
     protected Optional<SkinModel> getRandomSkin() {
         //skin wasn't found and there are no preferences so set a default skin
         List<SkinModel> defaultSkins = core.getDefaultSkins();
@@ -60,5 +126,20 @@ public abstract class SharedListener {
         return Optional.empty();
     }
 
-    protected abstract void save(UserPreference preferences);
+    /**
+     * The returned preferences are detached from the cache and never saved, so the default is only used for this
+     * login and a later one could still restore the own skin.
+     *
+     * @param preferences cached preferences without a target skin
+     * @return preferences with a random default skin or the given ones if there are no default skins
+     */
+    protected UserPreference withDefaultSkin(UserPreference preferences) {
+        return getRandomSkin()
+                .map(skin -> new UserPreference(-1, preferences.getUuid(), skin, preferences.isKeepSkin()))
+                .orElse(preferences);
+    }
+
+    protected void save(UserPreference preferences) {
+        core.getSaveQueue().enqueue(preferences);
+    }
 }
@@ -9,7 +9,6 @@ import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.time.format.FormatStyle;
 import java.util.Map;
-import java.util.Optional;
 import java.util.UUID;
 import java.util.function.BiFunction;
 
@@ -31,13 +30,13 @@ public class SkinFormatter implements BiFunction<String, SkinModel, String> {
         long timeFetched = skin.getTimestamp();
 
         Map<TextureType, TextureModel> textures = skin.getTextures();
-        Optional<TextureModel> skinTexture = Optional.ofNullable(textures.get(TextureType.SKIN));
-        Optional<TextureModel> capeTexture = Optional.ofNullable(textures.get(TextureType.CAPE));
+        TextureModel skinTexture = textures.get(TextureType.SKIN);
+        TextureModel capeTexture = textures.get(TextureType.CAPE);
 
-        String skinUrl = skinTexture.map(TextureModel::getShortUrl).orElse("");
-        String slimModel = skinTexture.map(TextureModel::isSlim).map(slim -> "Alex").orElse("Steve");
+        String skinUrl = skinTexture == null ? "" : skinTexture.getShortUrl();
+        String slimModel = skinTexture != null && skinTexture.isSlim() ? "Alex" : "Steve";
 
-        String capeUrl = capeTexture.map(TextureModel::getShortUrl).orElse(" - ");
+        String capeUrl = capeTexture == null ? " - " : capeTexture.getShortUrl();
 
         String timeFormat = timeFormatter.format(Instant.ofEpochMilli(timeFetched));
         return template.replace("{0}", Integer.toString(rowId))
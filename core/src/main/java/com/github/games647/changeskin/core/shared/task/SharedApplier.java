@@ -30,20 +30,15 @@ public abstract class SharedApplier implements Runnable {
         }
     }
 
-    protected abstract void runAsync(Runnable runnable);
-
     protected void save(UserPreference preference) {
         if (core.getStorage() == null) {
             return;
         }
 
-        runAsync(() -> {
-            //Save the target uuid from the requesting player source
-            preference.setTargetSkin(targetSkin);
-            preference.setKeepSkin(keepSkin);
+        //Save the target uuid from the requesting player source
+        preference.setTargetSkin(targetSkin);
+        preference.setKeepSkin(keepSkin);
 
-            core.getStorage().save(targetSkin);
-            core.getStorage().save(preference);
-        });
+        core.getSaveQueue().enqueue(preference);
     }
 }
@@ -1,8 +1,10 @@
 package com.github.games647.changeskin.core.shared.task;
 
 import com.github.games647.changeskin.core.ChangeSkinCore;
+import com.github.games647.changeskin.core.RateLimitException;
 import com.github.games647.changeskin.core.model.skin.SkinModel;
 import com.github.games647.changeskin.core.shared.MessageReceiver;
+import com.google.common.base.Throwables;
 
 import java.util.UUID;
 
@@ -25,16 +27,27 @@ public abstract class SharedDownloader implements Runnable, MessageReceiver {
     public void run() {
         SkinModel storedSkin = core.getStorage().getSkin(targetUUID);
         if (storedSkin == null) {
-            storedSkin = core.getSkinApi().downloadSkin(targetUUID).orElse(null);
+            core.getSkinApi().downloadSkinAsync(targetUUID).whenComplete((downloaded, error) -> {
+                if (error == null) {
+                    onSkinLoaded(downloaded.orElse(null));
+                } else if (Throwables.getRootCause(error) instanceof RateLimitException) {
+                    //keep the current skin instead of resetting it
+                    sendMessageInvoker("skin-rate-limit");
+                } else {
+                    core.getLogger().error("Failed to download skin of {}", targetUUID, error);
+                }
+            });
         } else {
-            storedSkin = core.checkAutoUpdate(storedSkin);
+            onSkinLoaded(core.checkAutoUpdate(storedSkin));
         }
+    }
 
+    private void onSkinLoaded(SkinModel skinData) {
         if (targetUUID.equals(receiverUUID)) {
             sendMessageInvoker("reset");
         }
 
-        scheduleApplyTask(storedSkin);
+        scheduleApplyTask(skinData);
     }
 
     protected abstract void scheduleApplyTask(SkinModel skinData);
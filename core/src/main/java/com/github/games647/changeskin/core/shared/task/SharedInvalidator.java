@@ -1,9 +1,11 @@
 package com.github.games647.changeskin.core.shared.task;
 
 import com.github.games647.changeskin.core.ChangeSkinCore;
+import com.github.games647.changeskin.core.RateLimitException;
 import com.github.games647.changeskin.core.model.UserPreference;
 import com.github.games647.changeskin.core.model.skin.SkinModel;
 import com.github.games647.changeskin.core.shared.MessageReceiver;
+import com.google.common.base.Throwables;
 
 import java.util.Optional;
 import java.util.UUID;
@@ -24,7 +26,16 @@ public abstract class SharedInvalidator implements Runnable, MessageReceiver {
         Optional<SkinModel> ownedSkin = preferences.getTargetSkin();
         if (ownedSkin.isPresent()) {
             sendMessageInvoker("invalidate-request");
-            core.getSkinApi().downloadSkin(ownedSkin.get().getProfileId()).ifPresent(this::scheduleApplyTask);
+            UUID ownerUUID = ownedSkin.get().getProfileId();
+            core.getSkinApi().downloadSkinAsync(ownerUUID).whenComplete((downloaded, error) -> {
+                if (error == null) {
+                    downloaded.ifPresent(this::scheduleApplyTask);
+                } else if (Throwables.getRootCause(error) instanceof RateLimitException) {
+                    sendMessageInvoker("skin-rate-limit");
+                } else {
+                    core.getLogger().error("Failed to download skin of {}", ownerUUID, error);
+                }
+            });
         } else {
             sendMessageInvoker("dont-have-skin");
         }
@@ -5,8 +5,8 @@ import com.github.games647.changeskin.core.NotPremiumException;
 import com.github.games647.changeskin.core.RateLimitException;
 import com.github.games647.changeskin.core.shared.MessageReceiver;
 
-import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletionException;
 
 public abstract class SharedNameResolver implements Runnable, MessageReceiver {
 
@@ -24,34 +24,45 @@ public abstract class SharedNameResolver implements Runnable, MessageReceiver {
     @Override
     public void run() {
         UUID uuid = core.getUuidCache().get(targetName);
-        if (uuid == null) {
-            if (core.getCrackedNames().containsKey(targetName)) {
-                sendMessageInvoker("not-premium");
-                return;
-            }
+        if (uuid != null) {
+            onResolved(uuid);
+            return;
+        }
 
-            try {
-                Optional<UUID> optUUID = core.getSkinApi().getUUID(targetName);
+        if (core.getCrackedNames().containsKey(targetName)) {
+            sendMessageInvoker("not-premium");
+            return;
+        }
+
+        //the request thread continues after the response, this thread is free in the meanwhile
+        core.getSkinApi().getUUIDAsync(targetName).whenComplete((optUUID, error) -> {
+            if (error == null) {
                 if (optUUID.isPresent()) {
-                    uuid = optUUID.get();
-                    core.getUuidCache().put(targetName, uuid);
+                    core.getUuidCache().put(targetName, optUUID.get());
+                    onResolved(optUUID.get());
                 } else {
                     sendMessageInvoker("no-resolve");
                 }
-            } catch (NotPremiumException notPremiumEx) {
+
+                return;
+            }
+
+            Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+            if (cause instanceof NotPremiumException) {
                 core.getCrackedNames().put(targetName, new Object());
                 sendMessageInvoker("not-premium");
-            } catch (RateLimitException rateLimitEx) {
+            } else if (cause instanceof RateLimitException) {
                 sendMessageInvoker("rate-limit");
+            } else {
+                core.getLogger().error("Failed to resolve name {}", targetName, cause);
+                sendMessageInvoker("no-resolve");
             }
-        }
-
-        if (uuid != null) {
-            sendMessageInvoker("uuid-resolved");
-            if (!hasSkinPermission(uuid)) {
-                return;
-            }
+        });
+    }
 
+    private void onResolved(UUID uuid) {
+        sendMessageInvoker("uuid-resolved");
+        if (hasSkinPermission(uuid)) {
             scheduleDownloader(uuid);
         }
     }
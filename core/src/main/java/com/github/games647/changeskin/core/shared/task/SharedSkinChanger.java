@@ -1,6 +1,7 @@
 package com.github.games647.changeskin.core.shared.task;
 
 import com.github.games647.changeskin.core.ChangeSkinCore;
+import com.github.games647.changeskin.core.RateLimitException;
 import com.github.games647.changeskin.core.model.auth.Account;
 
 import java.util.UUID;
@@ -26,17 +27,24 @@ public abstract class SharedSkinChanger implements Runnable {
         core.getAuthApi().changeSkin(uuid, accessToken, url, false);
 
         //this could properly cause issues for uuid resolving to this database entry
-        core.getSkinApi().downloadSkin(uuid).ifPresent(skinData -> {
-            core.getStorage().save(skinData);
-
-            String localeMessage = core.getMessage("skin-uploaded")
-                    .replace("{0}", owner.getProfile().getName())
-                    .replace("{1}", "Skin-" + skinData.getRowId());
-            sendMessageInvoker(localeMessage);
-
-            //revert to the old skin
+        try {
+            core.getSkinApi().downloadSkin(uuid).ifPresent(skinData -> {
+                core.getStorage().save(skinData);
+
+                String localeMessage = core.getMessage("skin-uploaded")
+                        .replace("{0}", owner.getProfile().getName())
+                        .replace("{1}", "Skin-" + skinData.getRowId());
+                sendMessageInvoker(localeMessage);
+
+                //revert to the old skin
+                core.getAuthApi().changeSkin(uuid, accessToken, oldSkinUrl, false);
+            });
+        } catch (RateLimitException rateLimitEx) {
+            sendMessageInvoker(core.getMessage("skin-rate-limit"));
+
+            //the uploaded skin couldn't be saved, so the account gets its old one back
             core.getAuthApi().changeSkin(uuid, accessToken, oldSkinUrl, false);
-        });
+        }
     }
 
     protected abstract void sendMessageInvoker(String localeMessage);
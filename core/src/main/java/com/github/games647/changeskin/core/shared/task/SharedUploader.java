@@ -1,6 +1,7 @@
 package com.github.games647.changeskin.core.shared.task;
 
 import com.github.games647.changeskin.core.ChangeSkinCore;
+import com.github.games647.changeskin.core.RateLimitException;
 import com.github.games647.changeskin.core.model.GameProfile;
 import com.github.games647.changeskin.core.model.auth.Account;
 import com.github.games647.changeskin.core.model.skin.TextureType;
@@ -24,9 +25,16 @@ public abstract class SharedUploader implements Runnable {
         GameProfile profile = owner.getProfile();
         UUID id = profile.getId();
 
-        String oldSkinUrl = core.getSkinApi().downloadSkin(id)
-                .map(skinModel -> skinModel.getTextures().get(TextureType.SKIN).getUrl())
-                .orElse("");
+        String oldSkinUrl;
+        try {
+            oldSkinUrl = core.getSkinApi().downloadSkin(id)
+                    .map(skinModel -> skinModel.getTextures().get(TextureType.SKIN).getUrl())
+                    .orElse("");
+        } catch (RateLimitException rateLimitEx) {
+            //the old skin is required to restore it after the upload
+            sendMessageInvoker("skin-rate-limit");
+            return;
+        }
 
         sendMessageInvoker("skin-change-queued");
         scheduleChangeTask(oldSkinUrl);
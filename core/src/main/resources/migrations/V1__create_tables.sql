@@ -13,7 +13,7 @@ CREATE TABLE IF NOT EXISTS `skinData`
 );
 
 -- UUID could be primary key, but it's easier readable for database administrators in char than binary
--- therefore is not really optimized for storage
+-- therefore is not really optimized for storage. The binary-uuid option converts it to BINARY(16)
 CREATE TABLE IF NOT EXISTS `preferences`
 (
     `UserID`     INTEGER PRIMARY KEY AUTO_INCREMENT,
@@ -0,0 +1,5 @@
+-- Serves the newest skin lookup of a profile (WHERE UUID=? ORDER BY Timestamp DESC) directly from the index
+CREATE INDEX `skinData_UUID_Timestamp` ON `skinData` (`UUID`, `Timestamp`);
+
+-- Lookup of outdated skins
+CREATE INDEX `skinData_Timestamp` ON `skinData` (`Timestamp`);
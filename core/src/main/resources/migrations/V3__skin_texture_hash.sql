@@ -0,0 +1,5 @@
+-- Content hash of the skin url, cape url and model. Existing rows are filled by the compaction job
+ALTER TABLE `skinData` ADD COLUMN `TextureHash` CHAR(64);
+
+-- Lookup of an already stored texture of the same profile before inserting a new row
+CREATE INDEX `skinData_UUID_TextureHash` ON `skinData` (`UUID`, `TextureHash`);
@@ -0,0 +1,17 @@
+-- Name -> UUID lookups against Mojang, so they survive restarts. UUID is NULL if the name has no premium account
+CREATE TABLE IF NOT EXISTS `nameCache`
+(
+    `Name`      VARCHAR(16) PRIMARY KEY,
+    `UUID`      CHAR(36),
+    `ExpiresAt` BIGINT      NOT NULL
+);
+
+-- Profiles without skin data
+CREATE TABLE IF NOT EXISTS `crackedProfiles`
+(
+    `UUID`      CHAR(36) PRIMARY KEY,
+    `ExpiresAt` BIGINT   NOT NULL
+);
+
+CREATE INDEX `nameCache_ExpiresAt` ON `nameCache` (`ExpiresAt`);
+CREATE INDEX `crackedProfiles_ExpiresAt` ON `crackedProfiles` (`ExpiresAt`);
@@ -0,0 +1,3 @@
+-- Textures property exactly as signed by Mojang, so loading a skin doesn't need to serialize it again.
+-- Existing rows are filled by the compaction job
+ALTER TABLE `skinData` ADD COLUMN `EncodedValue` TEXT;
@@ -0,0 +1,67 @@
+package com.github.games647.changeskin.core;
+
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+
+public class AdaptiveRateLimiterTest {
+
+    @Test
+    public void testRetryAfterSeconds() {
+        assertThat(AdaptiveRateLimiter.parseRetryAfter("120"), is(Duration.ofMinutes(2)));
+        assertThat(AdaptiveRateLimiter.parseRetryAfter(" 5 "), is(Duration.ofSeconds(5)));
+    }
+
+    @Test
+    public void testRetryAfterDate() {
+        String header = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC).plusMinutes(1));
+        Duration delay = AdaptiveRateLimiter.parseRetryAfter(header);
+        assertThat(delay.getSeconds() > 50 && delay.getSeconds() <= 60, is(true));
+    }
+
+    @Test
+    public void testRetryAfterInvalid() {
+        assertThat(AdaptiveRateLimiter.parseRetryAfter(null), nullValue());
+        assertThat(AdaptiveRateLimiter.parseRetryAfter("soon"), nullValue());
+    }
+
+    @Test
+    public void testBlocked() throws InterruptedException {
+        AdaptiveRateLimiter limiter = new AdaptiveRateLimiter(Duration.ofMinutes(10), 600);
+        assertThat(limiter.tryAcquire(), is(true));
+
+        limiter.onRateLimited(Duration.ofMillis(500));
+        assertThat(limiter.isBlocked(), is(true));
+        assertThat(limiter.tryAcquire(), is(false));
+        assertThat(limiter.getTimeUntilNextPermit().isZero(), is(false));
+
+        TimeUnit.MILLISECONDS.sleep(600);
+        assertThat(limiter.tryAcquire(), is(true));
+    }
+
+    @Test
+    public void testBackoff() {
+        AdaptiveRateLimiter limiter = new AdaptiveRateLimiter(Duration.ofMinutes(10), 600);
+        Duration first = limiter.onRateLimited(null);
+        assertThat(first.getSeconds() >= 2 && first.toMillis() <= 5_000, is(true));
+
+        Duration second = limiter.onRateLimited(null);
+        assertThat(second.toMillis() >= 5_000 && second.toMillis() <= 10_000, is(true));
+
+        for (int i = 0; i < 20; i++) {
+            assertThat(limiter.onRateLimited(null).compareTo(Duration.ofMinutes(10)) <= 0, is(true));
+        }
+
+        //starts over after a success
+        limiter.onSuccess();
+        assertThat(limiter.onRateLimited(null).toMillis() <= 5_000, is(true));
+    }
+}
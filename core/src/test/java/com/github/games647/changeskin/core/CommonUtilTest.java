@@ -0,0 +1,58 @@
+package com.github.games647.changeskin.core;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class CommonUtilTest {
+
+    private final Set<Integer> clientPorts = new HashSet<>();
+    private HttpServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            synchronized (clientPorts) {
+                clientPorts.add(exchange.getRemoteAddress().getPort());
+            }
+
+            byte[] response = "{\"error\":\"TooManyRequestsException\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(RateLimitException.RATE_LIMIT_ID, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop(0);
+    }
+
+    @Test
+    public void testKeepAlive() throws Exception {
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/profile";
+        for (int i = 0; i < 3; i++) {
+            HttpURLConnection connection = CommonUtil.getConnection(url);
+            assertThat(connection.getResponseCode(), is(RateLimitException.RATE_LIMIT_ID));
+            CommonUtil.discardResponse(connection);
+        }
+
+        //all requests used the same socket
+        assertThat(clientPorts.size(), is(1));
+    }
+}
@@ -0,0 +1,159 @@
+package com.github.games647.changeskin.core;
+
+import com.github.games647.changeskin.core.model.UUIDTypeAdapter;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.fail;
+
+public class NameBatchResolverTest {
+
+    private static final UUID NOTCH = UUID.fromString("069a79f4-44e9-4726-a5be-fca90e38aaf5");
+    private static final UUID JEB = UUID.fromString("853c80ef-3c37-49fd-aa49-938b674adae6");
+
+    private final Map<String, UUID> knownProfiles = new HashMap<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicBoolean malformed = new AtomicBoolean();
+
+    private HttpServer server;
+    private ScheduledExecutorService scheduler;
+    private ExecutorService requestExecutor;
+
+    private Map<String, UUID> uuidCache;
+    private Map<String, Object> crackedNames;
+    private NameBatchResolver resolver;
+
+    @Before
+    public void setUp() throws Exception {
+        knownProfiles.put("Notch", NOTCH);
+        knownProfiles.put("jeb_", JEB);
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/profiles/minecraft", exchange -> {
+            requests.incrementAndGet();
+
+            String[] names = new Gson().fromJson(new InputStreamReader(exchange.getRequestBody(),
+                    StandardCharsets.UTF_8), String[].class);
+
+            JsonArray profiles = new JsonArray();
+            for (String name : names) {
+                for (Map.Entry<String, UUID> entry : knownProfiles.entrySet()) {
+                    if (entry.getKey().equalsIgnoreCase(name)) {
+                        JsonObject profile = new JsonObject();
+                        profile.addProperty("id", UUIDTypeAdapter.toMojangId(entry.getValue()));
+                        profile.addProperty("name", entry.getKey());
+                        profiles.add(profile);
+                    }
+                }
+            }
+
+            String body = malformed.get() ? "[{\"id\":" : profiles.toString();
+            byte[] response = body.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        server.start();
+
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        requestExecutor = Executors.newCachedThreadPool();
+
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/profiles/minecraft";
+        MojangSkinApi skinApi = new MojangSkinApi(LoggerFactory.getLogger(getClass()), requestExecutor, 600,
+                Collections.emptyList(), url);
+
+        uuidCache = CommonUtil.buildCache(60, -1);
+        crackedNames = CommonUtil.buildCache(60, -1);
+        resolver = new NameBatchResolver(skinApi, scheduler, requestExecutor, Duration.ofMillis(200),
+                uuidCache, crackedNames);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop(0);
+        scheduler.shutdownNow();
+        requestExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testBatchWindow() throws Exception {
+        CompletableFuture<Optional<UUID>> notch = resolver.resolve("Notch");
+        CompletableFuture<Optional<UUID>> jeb = resolver.resolve("JEB_");
+        CompletableFuture<Optional<UUID>> cracked = resolver.resolve("NoPremium");
+
+        assertThat(notch.get(), is(Optional.of(NOTCH)));
+        assertThat(jeb.get(), is(Optional.of(JEB)));
+        assertThat(cracked.get(), is(Optional.empty()));
+        assertThat(requests.get(), is(1));
+
+        assertThat(uuidCache.get("Notch"), is(NOTCH));
+        assertThat(uuidCache.get("JEB_"), is(JEB));
+        assertThat(crackedNames.containsKey("NoPremium"), is(true));
+    }
+
+    @Test
+    public void testFullBatch() throws Exception {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[MojangSkinApi.MAX_BATCH_NAMES + 1];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = resolver.resolve("Player" + i);
+        }
+
+        //the full batch is sent without waiting for the window
+        assertThat(resolver.getPendingCount(), is(1));
+
+        CompletableFuture.allOf(futures).get();
+        assertThat(requests.get(), is(2));
+    }
+
+    @Test
+    public void testMalformedResponse() throws Exception {
+        malformed.set(true);
+
+        CompletableFuture<Optional<UUID>> notch = resolver.resolve("Notch");
+        try {
+            notch.get(5, TimeUnit.SECONDS);
+            fail("Malformed response should fail the lookup");
+        } catch (ExecutionException executionEx) {
+            assertThat(executionEx.getCause() instanceof IOException, is(true));
+        }
+
+        assertThat(crackedNames.containsKey("Notch"), is(false));
+    }
+
+    @Test
+    public void testCached() throws Exception {
+        resolver.resolve("Notch").get();
+        assertThat(resolver.resolve("Notch").get(), is(Optional.of(NOTCH)));
+        assertThat(requests.get(), is(1));
+    }
+}
@@ -0,0 +1,62 @@
+package com.github.games647.changeskin.core;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class PersistentCacheTest {
+
+    private PersistentCache<String, Integer> cache;
+
+    @Before
+    public void setUp() throws Exception {
+        cache = new PersistentCache<>(Duration.ofHours(1), -1);
+    }
+
+    @Test
+    public void testDrainChanges() throws Exception {
+        cache.put("a", 1);
+        cache.put("a", 2);
+
+        List<PersistentCache.Entry<String, Integer>> changes = cache.drainChanges();
+        assertThat(changes.size(), is(1));
+        assertThat(changes.get(0).getValue(), is(2));
+
+        assertThat(cache.drainChanges().isEmpty(), is(true));
+    }
+
+    @Test
+    public void testRestoreNotDirty() throws Exception {
+        cache.restore("a", 1, System.currentTimeMillis() + 60_000);
+
+        assertThat(cache.get("a"), is(1));
+        assertThat(cache.drainChanges().isEmpty(), is(true));
+    }
+
+    @Test
+    public void testRestoredExpiration() throws Exception {
+        cache.restore("expired", 1, System.currentTimeMillis() - 1);
+        assertThat(cache.containsKey("expired"), is(false));
+
+        cache.restore("a", 1, System.currentTimeMillis() + 50);
+        Thread.sleep(100);
+        cache.sweep();
+        assertThat(cache.containsKey("a"), is(false));
+    }
+
+    @Test
+    public void testOverwriteRestored() throws Exception {
+        cache.restore("a", 1, System.currentTimeMillis() + 50);
+        cache.put("a", 2);
+        Thread.sleep(100);
+
+        //a new write starts a new lifetime
+        cache.sweep();
+        assertThat(cache.get("a"), is(2));
+    }
+}
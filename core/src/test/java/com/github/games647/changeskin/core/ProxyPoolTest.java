@@ -0,0 +1,83 @@
+package com.github.games647.changeskin.core;
+
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.Proxy.Type;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class ProxyPoolTest {
+
+    private static final String BUCKET = "api.mojang.com";
+
+    private final Proxy first = new Proxy(Type.HTTP, InetSocketAddress.createUnresolved("first", 8080));
+    private final Proxy second = new Proxy(Type.HTTP, InetSocketAddress.createUnresolved("second", 8080));
+
+    @Test
+    public void testEmpty() {
+        ProxyPool pool = new ProxyPool(Collections.emptyList(), Duration.ofMinutes(10), 600);
+        assertThat(pool.acquire(BUCKET).isPresent(), is(false));
+    }
+
+    @Test
+    public void testCapacityPerProxy() {
+        ProxyPool pool = new ProxyPool(Arrays.asList(first, second), Duration.ofMinutes(10), 5);
+        for (int i = 0; i < 10; i++) {
+            assertThat(pool.acquire(BUCKET).isPresent(), is(true));
+        }
+
+        assertThat(pool.acquire(BUCKET).isPresent(), is(false));
+
+        //other endpoints have their own limit
+        assertThat(pool.acquire("sessionserver.mojang.com").isPresent(), is(true));
+    }
+
+    @Test
+    public void testPreferFast() {
+        ProxyPool pool = new ProxyPool(Arrays.asList(first, second), Duration.ofMinutes(10), 600);
+        node(pool, first).onSuccess(BUCKET, Duration.ofSeconds(2));
+        node(pool, second).onSuccess(BUCKET, Duration.ofMillis(50));
+
+        assertThat(pool.acquire(BUCKET).get().getProxy(), is(second));
+    }
+
+    @Test
+    public void testRateLimited() {
+        ProxyPool pool = new ProxyPool(Arrays.asList(first, second), Duration.ofMinutes(10), 600);
+        node(pool, second).onRateLimited(BUCKET, Duration.ofMinutes(1));
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(pool.acquire(BUCKET).get().getProxy(), is(first));
+        }
+    }
+
+    @Test
+    public void testCircuitBreaker() {
+        ProxyPool pool = new ProxyPool(Arrays.asList(first, second), Duration.ofMinutes(10), 600);
+        ProxyPool.Node broken = node(pool, first);
+        for (int i = 0; i < 3; i++) {
+            broken.onFailure();
+        }
+
+        assertThat(broken.isBroken(), is(true));
+        for (int i = 0; i < 5; i++) {
+            Optional<ProxyPool.Node> acquired = pool.acquire(BUCKET);
+            assertThat(acquired.get().getProxy(), is(second));
+        }
+
+        //recovers after a successful request
+        broken.onSuccess(BUCKET, Duration.ofMillis(100));
+        assertThat(broken.isBroken(), is(false));
+    }
+
+    private ProxyPool.Node node(ProxyPool pool, Proxy proxy) {
+        return pool.getNodes().stream().filter(node -> node.getProxy().equals(proxy)).findFirst().get();
+    }
+}
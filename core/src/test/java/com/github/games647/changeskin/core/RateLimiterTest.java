@@ -1,7 +1,10 @@
 package com.github.games647.changeskin.core;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 
@@ -42,4 +45,53 @@ public class RateLimiterTest {
         limiter = new RateLimiter(Duration.ofMinutes(2), -50);
         assertThat(limiter.tryAcquire(), is(false));
     }
+
+    @Test
+    public void testMultiplePermits() {
+        limiter = new RateLimiter(Duration.ofMinutes(2), 5);
+        assertThat(limiter.tryAcquire(3), is(true));
+        assertThat(limiter.getAvailablePermits(), is(2));
+
+        //all or nothing
+        assertThat(limiter.tryAcquire(3), is(false));
+        assertThat(limiter.tryAcquire(2), is(true));
+        assertThat(limiter.tryAcquire(6), is(false));
+    }
+
+    @Test
+    public void testTimeUntilNextPermit() {
+        limiter = new RateLimiter(Duration.ofMinutes(2), 1);
+        assertThat(limiter.getTimeUntilNextPermit(), is(Duration.ZERO));
+
+        limiter.tryAcquire();
+        Duration wait = limiter.getTimeUntilNextPermit();
+        assertThat(wait.compareTo(Duration.ZERO) > 0, is(true));
+        assertThat(wait.compareTo(Duration.ofMinutes(2)) <= 0, is(true));
+    }
+
+    @Test
+    public void testContention() throws InterruptedException {
+        limiter = new RateLimiter(Duration.ofMinutes(2), 600);
+
+        AtomicInteger acquired = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < 200; j++) {
+                    if (limiter.tryAcquire()) {
+                        acquired.incrementAndGet();
+                    }
+                }
+            });
+
+            threads.add(thread);
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(acquired.get(), is(600));
+    }
 }
@@ -0,0 +1,86 @@
+package com.github.games647.changeskin.core;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsSame.sameInstance;
+
+public class SingleFlightTest {
+
+    private ExecutorService executor;
+    private SingleFlight<String, Integer> singleFlight;
+
+    @Before
+    public void setUp() throws Exception {
+        executor = Executors.newCachedThreadPool();
+        singleFlight = new SingleFlight<>(executor, Duration.ofSeconds(5));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testSharedBlockingCall() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<Integer> first = executor.submit(() -> singleFlight.get("Notch", () -> {
+            started.countDown();
+            release.await();
+            return calls.incrementAndGet();
+        }));
+
+        started.await();
+        Future<Integer> second = executor.submit(() -> singleFlight.get("Notch", calls::incrementAndGet));
+
+        //give the second caller time to join the pending call
+        TimeUnit.MILLISECONDS.sleep(100);
+        release.countDown();
+
+        assertThat(first.get(), is(1));
+        assertThat(second.get(), is(1));
+        assertThat(calls.get(), is(1));
+        assertThat(singleFlight.getInFlightCount(), is(0));
+    }
+
+    @Test
+    public void testSharedAsyncCall() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+
+        CompletableFuture<Integer> first = singleFlight.getAsync("Notch", () -> {
+            release.await();
+            return calls.incrementAndGet();
+        });
+        CompletableFuture<Integer> second = singleFlight.getAsync("Notch", calls::incrementAndGet);
+        assertThat(second, sameInstance(first));
+
+        release.countDown();
+        assertThat(first.get(), is(1));
+
+        //finished calls are not cached
+        assertThat(singleFlight.getAsync("Notch", calls::incrementAndGet).get(), is(2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testException() throws Exception {
+        singleFlight.get("Notch", () -> {
+            throw new IllegalArgumentException();
+        });
+    }
+}
@@ -0,0 +1,76 @@
+package com.github.games647.changeskin.core;
+
+import com.github.games647.changeskin.core.model.UserPreference;
+import com.github.games647.changeskin.core.model.skin.SkinModel;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+
+public class SkinCacheTest {
+
+    private SkinCache cache;
+
+    @Before
+    public void setUp() throws Exception {
+        cache = new SkinCache(16, 16, Duration.ofMinutes(1));
+    }
+
+    @Test
+    public void testSkinIndexes() throws Exception {
+        UUID owner = UUID.randomUUID();
+        SkinModel skin = newSkin(5, 1_000, owner);
+        cache.putSkin(skin);
+
+        assertThat(cache.getSkin(5), is(skin));
+        assertThat(cache.getSkin(owner), is(skin));
+        assertThat(cache.getSkin(6), nullValue());
+    }
+
+    @Test
+    public void testNewestOwnerSkin() throws Exception {
+        UUID owner = UUID.randomUUID();
+        SkinModel newer = newSkin(2, 2_000, owner);
+        cache.putSkin(newer);
+        cache.putSkin(newSkin(1, 1_000, owner));
+
+        assertThat(cache.getSkin(owner), is(newer));
+    }
+
+    @Test
+    public void testPreferences() throws Exception {
+        UUID owner = UUID.randomUUID();
+        SkinModel skin = newSkin(3, 1_000, owner);
+
+        UUID player = UUID.randomUUID();
+        UserPreference preference = new UserPreference(1, player, skin, false);
+        cache.putPreferences(preference);
+
+        assertThat(cache.getPreferences(player), is(preference));
+        assertThat(cache.getSkin(3), is(skin));
+
+        cache.invalidatePreferences(player);
+        assertThat(cache.getPreferences(player), nullValue());
+    }
+
+    @Test
+    public void testStats() throws Exception {
+        cache.getPreferences(UUID.randomUUID());
+        assertThat(cache.getPreferenceStats().missCount(), is(1L));
+
+        UUID player = UUID.randomUUID();
+        cache.putPreferences(new UserPreference(player));
+        cache.getPreferences(player);
+        assertThat(cache.getPreferenceStats().hitCount(), is(1L));
+    }
+
+    private static SkinModel newSkin(int rowId, long timestamp, UUID owner) {
+        return new SkinModel(rowId, timestamp, owner, "Name", false, "abc", "", new byte[0]);
+    }
+}
@@ -0,0 +1,154 @@
+package com.github.games647.changeskin.core;
+
+import com.github.games647.changeskin.core.model.skin.SkinModel;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class SkinRevalidatorTest {
+
+    private static final Duration MAX_AGE = Duration.ofMinutes(10);
+
+    private final Map<UUID, CompletableFuture<Optional<SkinModel>>> downloads = new HashMap<>();
+    private final Map<UUID, SkinModel> knownSkins = new HashMap<>();
+    private final List<UUID> requests = new ArrayList<>();
+    private final List<SkinModel> saved = new ArrayList<>();
+    private final List<SkinModel> refreshed = new ArrayList<>();
+
+    private SkinRevalidator revalidator;
+
+    @Before
+    public void setUp() throws Exception {
+        revalidator = new SkinRevalidator(LoggerFactory.getLogger(SkinRevalidatorTest.class), owner -> {
+            requests.add(owner);
+            return downloads.computeIfAbsent(owner, key -> new CompletableFuture<>());
+        }, knownSkins::get, saved::add, refreshed::add, Runnable::run, MAX_AGE);
+    }
+
+    @Test
+    public void testFreshSkinWithoutDownload() throws Exception {
+        SkinModel skin = newSkin(UUID.randomUUID(), Duration.ofMinutes(1));
+
+        assertThat(revalidator.revalidate(skin), is(skin));
+        assertThat(requests.isEmpty(), is(true));
+    }
+
+    @Test
+    public void testServeStaleWhileRefreshing() throws Exception {
+        UUID owner = UUID.randomUUID();
+        SkinModel stale = newSkin(owner, Duration.ofMinutes(20));
+
+        //the login doesn't wait for the download
+        assertThat(revalidator.revalidate(stale), is(stale));
+        assertThat(revalidator.revalidate(stale), is(stale));
+        assertThat(requests.size(), is(1));
+        assertThat(revalidator.getRunningRefreshes(), is(1));
+
+        SkinModel fresh = newSkin(owner, Duration.ZERO);
+        downloads.get(owner).complete(Optional.of(fresh));
+
+        assertThat(saved, is(Arrays.asList(fresh)));
+        assertThat(refreshed, is(Arrays.asList(fresh)));
+        assertThat(revalidator.getRunningRefreshes(), is(0));
+    }
+
+    @Test
+    public void testFailedDownloadKeepsStale() throws Exception {
+        UUID owner = UUID.randomUUID();
+        SkinModel stale = newSkin(owner, Duration.ofMinutes(20));
+
+        CompletableFuture<SkinModel> refresh = revalidator.refresh(stale);
+        downloads.get(owner).complete(Optional.empty());
+
+        assertThat(refresh.join(), is(stale));
+        assertThat(saved.isEmpty(), is(true));
+        assertThat(refreshed.isEmpty(), is(true));
+    }
+
+    @Test
+    public void testKnownFreshSkin() throws Exception {
+        UUID owner = UUID.randomUUID();
+        SkinModel fresh = newSkin(owner, Duration.ofMinutes(1));
+        knownSkins.put(owner, fresh);
+
+        assertThat(revalidator.revalidate(newSkin(owner, Duration.ofMinutes(20))), is(fresh));
+        assertThat(requests.isEmpty(), is(true));
+        assertThat(refreshed, is(Arrays.asList(fresh)));
+    }
+
+    @Test
+    public void testKnownFreshSkinNotifiedOnce() throws Exception {
+        UUID owner = UUID.randomUUID();
+        SkinModel fresh = newSkin(owner, Duration.ofMinutes(1));
+        knownSkins.put(owner, fresh);
+
+        SkinModel stale = newSkin(owner, Duration.ofMinutes(20));
+        revalidator.revalidate(stale);
+        revalidator.sweep(Arrays.asList(stale), Duration.ZERO, 10);
+        assertThat(refreshed, is(Arrays.asList(fresh)));
+    }
+
+    @Test
+    public void testFailedDownloadStart() throws Exception {
+        UUID owner = UUID.randomUUID();
+        SkinModel stale = newSkin(owner, Duration.ofMinutes(20));
+
+        SkinRevalidator rejecting = new SkinRevalidator(LoggerFactory.getLogger(SkinRevalidatorTest.class), id -> {
+            requests.add(id);
+            throw new RejectedExecutionException();
+        }, knownSkins::get, saved::add, refreshed::add, Runnable::run, MAX_AGE);
+
+        //the owner isn't blocked by the failed refresh
+        assertThat(rejecting.refresh(stale).join(), is(stale));
+        assertThat(rejecting.getRunningRefreshes(), is(0));
+        assertThat(rejecting.sweep(Arrays.asList(stale), Duration.ZERO, 10), is(1));
+        assertThat(requests.size(), is(2));
+    }
+
+    @Test
+    public void testSweepBudget() throws Exception {
+        SkinModel oldest = newSkin(UUID.randomUUID(), Duration.ofMinutes(30));
+        SkinModel outdated = newSkin(UUID.randomUUID(), Duration.ofMinutes(20));
+        SkinModel soonOutdated = newSkin(UUID.randomUUID(), Duration.ofMinutes(8));
+        SkinModel fresh = newSkin(UUID.randomUUID(), Duration.ofMinutes(1));
+        List<SkinModel> skins = Arrays.asList(fresh, soonOutdated, outdated, oldest);
+
+        //the oldest skins come first
+        assertThat(revalidator.sweep(skins, Duration.ofMinutes(5), 2), is(2));
+        assertThat(requests, is(Arrays.asList(oldest.getProfileId(), outdated.getProfileId())));
+
+        //running refreshes are skipped and skins outdated before the next run are included
+        assertThat(revalidator.sweep(skins, Duration.ofMinutes(5), 10), is(1));
+        assertThat(requests.get(2), is(soonOutdated.getProfileId()));
+    }
+
+    @Test
+    public void testSweepSameOwnerOnce() throws Exception {
+        UUID owner = UUID.randomUUID();
+        List<SkinModel> skins = Arrays.asList(newSkin(owner, Duration.ofMinutes(20))
+                , newSkin(owner, Duration.ofMinutes(30)));
+
+        assertThat(revalidator.sweep(skins, Duration.ZERO, 10), is(1));
+        assertThat(requests.size(), is(1));
+    }
+
+    private static SkinModel newSkin(UUID owner, Duration age) {
+        long timestamp = System.currentTimeMillis() - age.toMillis();
+        return new SkinModel(-1, timestamp, owner, "Name", false, "abc", "", new byte[0]);
+    }
+}
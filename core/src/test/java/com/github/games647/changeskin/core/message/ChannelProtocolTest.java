@@ -0,0 +1,127 @@
+package com.github.games647.changeskin.core.message;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ChannelProtocolTest {
+
+    @Test
+    public void testSingleMessage() {
+        ForwardMessage message = new ForwardMessage("skin", "set Notch ä€😀", true, false);
+
+        List<byte[]> frames = ChannelProtocol.encode(Collections.singletonList(message));
+        assertThat(frames.size(), is(1));
+        assertThat(frames.get(0)[0], is(ChannelProtocol.VERSION));
+
+        List<ForwardMessage> decoded = decodeForward(frames.get(0));
+        assertThat(decoded.size(), is(1));
+        assertThat(decoded.get(0).getCommandName(), is("skin"));
+        assertThat(decoded.get(0).getArgs(), is(message.getArgs()));
+        assertThat(decoded.get(0).isSource(), is(true));
+        assertThat(decoded.get(0).isOP(), is(false));
+    }
+
+    @Test
+    public void testBatch() {
+        List<SkinUpdateMessage> messages = Arrays.asList(new SkinUpdateMessage("a"), new SkinUpdateMessage("b"));
+
+        List<byte[]> frames = ChannelProtocol.encode(messages);
+        assertThat(frames.size(), is(1));
+
+        List<SkinUpdateMessage> decoded = decodeUpdates(frames.get(0));
+        assertThat(decoded.size(), is(2));
+        assertThat(decoded.get(0).getPlayerName(), is("a"));
+        assertThat(decoded.get(1).getPlayerName(), is("b"));
+    }
+
+    @Test
+    public void testSplitLargeBatch() {
+        List<SkinUpdateMessage> messages = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            messages.add(new SkinUpdateMessage("Player" + i));
+        }
+
+        List<byte[]> frames = ChannelProtocol.encode(messages);
+        assertThat(frames.size() > 1, is(true));
+
+        int index = 0;
+        for (byte[] frame : frames) {
+            assertThat(frame.length <= ChannelProtocol.MAX_FRAME_SIZE, is(true));
+            for (SkinUpdateMessage message : decodeUpdates(frame)) {
+                assertThat(message.getPlayerName(), is("Player" + index++));
+            }
+        }
+
+        assertThat(index, is(messages.size()));
+    }
+
+    @Test
+    public void testMessageWithSkin() {
+        UUID receiver = UUID.randomUUID();
+        SkinReference skin = SkinReference.readFrom(new FrameInput(new byte[]{1, 0, 0, 0, 7
+                , 0, 0, 0, 0, 0, 0, 0, 1, 0, 0, 0, 0, 0, 0, 0, 2}));
+        PermResultMessage message = new PermResultMessage(true, skin, receiver);
+
+        byte[] frame = ChannelProtocol.encode(Collections.singletonList(message)).get(0);
+        List<PermResultMessage> decoded = ChannelProtocol.decode(frame, PermResultMessage.TYPE_ID
+                , PermResultMessage::new);
+        assertThat(decoded.size(), is(1));
+        assertThat(decoded.get(0).isAllowed(), is(true));
+        assertThat(decoded.get(0).getReceiverUUID(), is(receiver));
+        assertThat(decoded.get(0).getSkin().getRowId(), is(7));
+        assertThat(decoded.get(0).getSkin().getProfileId(), is(new UUID(1, 2)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMixedTypes() {
+        ChannelProtocol.encode(Arrays.asList(new SkinUpdateMessage("a"), new ForwardMessage("a", "", true, true)));
+    }
+
+    @Test
+    public void testRejectMalformed() {
+        byte[] frame = ChannelProtocol.encode(Collections.singletonList(new SkinUpdateMessage("Notch"))).get(0);
+
+        //empty and unknown version
+        assertThat(decodeUpdates(new byte[0]).isEmpty(), is(true));
+        byte[] otherVersion = frame.clone();
+        otherVersion[0] = 2;
+        assertThat(decodeUpdates(otherVersion).isEmpty(), is(true));
+
+        //other type on this channel
+        assertThat(decodeForward(frame).isEmpty(), is(true));
+
+        //truncated
+        for (int length = 0; length < frame.length; length++) {
+            assertThat(decodeUpdates(Arrays.copyOf(frame, length)).isEmpty(), is(true));
+        }
+
+        //trailing data
+        assertThat(decodeUpdates(Arrays.copyOf(frame, frame.length + 1)).isEmpty(), is(true));
+
+        //more messages than data
+        byte[] hugeCount = frame.clone();
+        hugeCount[1] = (byte) 0xFF;
+        assertThat(decodeUpdates(hugeCount).isEmpty(), is(true));
+
+        //invalid string encoding
+        byte[] invalidString = frame.clone();
+        invalidString[invalidString.length - 1] = (byte) 0xC0;
+        assertThat(decodeUpdates(invalidString).isEmpty(), is(true));
+    }
+
+    private static List<SkinUpdateMessage> decodeUpdates(byte[] frame) {
+        return ChannelProtocol.decode(frame, SkinUpdateMessage.TYPE_ID, SkinUpdateMessage::new);
+    }
+
+    private static List<ForwardMessage> decodeForward(byte[] frame) {
+        return ChannelProtocol.decode(frame, ForwardMessage.TYPE_ID, ForwardMessage::new);
+    }
+}
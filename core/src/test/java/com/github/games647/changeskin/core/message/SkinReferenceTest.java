@@ -0,0 +1,87 @@
+package com.github.games647.changeskin.core.message;
+
+import com.github.games647.changeskin.core.model.skin.SkinModel;
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
+
+import java.util.UUID;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class SkinReferenceTest {
+
+    private static final UUID OWNER = UUID.fromString("78c3a4e8-37e4-4818-9df8-f9ce61c5efcc");
+
+    @Test
+    public void testSavedSkin() {
+        SkinModel skin = createSkin(5);
+
+        SkinReference reference = writeAndRead(SkinReference.of(skin));
+        assertThat(reference.isRaw(), is(false));
+        assertThat(reference.getRowId(), is(5));
+        assertThat(reference.getProfileId(), is(OWNER));
+        assertThat(reference.resolve(rowId -> rowId == 5 ? skin : null), sameInstance(skin));
+    }
+
+    @Test
+    public void testUnknownRowId() {
+        SkinReference reference = writeAndRead(SkinReference.of(createSkin(5)));
+        assertThat(reference.resolve(rowId -> null), nullValue());
+    }
+
+    @Test
+    public void testRawSkin() {
+        SkinModel skin = createSkin(-1);
+
+        SkinReference reference = writeAndRead(SkinReference.of(skin));
+        assertThat(reference.isRaw(), is(true));
+        assertThat(reference.getProfileId(), is(OWNER));
+
+        SkinModel decoded = reference.resolve(rowId -> {
+            throw new AssertionError("Raw skins shouldn't be looked up");
+        });
+
+        assertThat(decoded.getEncodedValue(), is(skin.getEncodedValue()));
+        assertThat(decoded.getSignature(), is(skin.getSignature()));
+        assertThat(decoded.getTextures(), is(skin.getTextures()));
+    }
+
+    @Test
+    public void testEchoWithoutDecoding() {
+        SkinModel skin = createSkin(-1);
+
+        //the server only forwards the reference, so the bytes have to be the same
+        byte[] sent = write(SkinReference.of(skin));
+        byte[] echoed = write(SkinReference.readFrom(new FrameInput(sent)));
+        assertThat(echoed, is(sent));
+    }
+
+    @Test
+    public void testUnknownType() {
+        FrameInput in = new FrameInput(new byte[]{42, 0, 0, 0, 0});
+        assertThat(SkinReference.readFrom(in), nullValue());
+        assertThat(in.isMalformed(), is(true));
+    }
+
+    private static SkinModel createSkin(int rowId) {
+        byte[] signature = new byte[512];
+        signature[0] = 1;
+        return new SkinModel(rowId, 1517055262188L, OWNER, "Rashomon_", true
+                , "173567ea72ad4a22bf70bcba5fed3b8b9ea024639131bdd863c25d22f89", "", signature);
+    }
+
+    private static SkinReference writeAndRead(SkinReference reference) {
+        return SkinReference.readFrom(new FrameInput(write(reference)));
+    }
+
+    private static byte[] write(SkinReference reference) {
+        ByteArrayDataOutput out = ByteStreams.newDataOutput();
+        reference.writeTo(out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,95 @@
+package com.github.games647.changeskin.core.model.skin;
+
+import com.github.games647.changeskin.core.model.UUIDTypeAdapter;
+import com.google.gson.JsonParseException;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Optional;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class SkinModelParserTest {
+
+    @Test
+    public void testProfileSlim() throws Exception {
+        SkinModel skin = loadFile("/skins/slimModel.json").get();
+
+        assertThat(skin.getRowId(), is(-1));
+        assertThat(skin.getTimestamp(), is(1517055262188L));
+        assertThat(skin.getProfileId(), is(UUIDTypeAdapter.parseId("78c3a4e837e448189df8f9ce61c5efcc")));
+        assertThat(skin.getProfileName(), is("Rashomon_"));
+
+        TextureModel texture = skin.getTextures().get(TextureType.SKIN);
+        assertThat(texture.getShortUrl(), is("173567ea72ad4a22bf70bcba5fed3b8b9ea024639131bdd863c25d22f89"));
+        assertThat(texture.isSlim(), is(true));
+
+        //the original encoding is kept for the signature
+        assertThat(VerifyUtil.isValid(skin.getEncodedValue(), skin.getSignature()), is(true));
+    }
+
+    @Test
+    public void testProfileSteve() throws Exception {
+        SkinModel skin = loadFile("/skins/steveModel.json").get();
+
+        assertThat(skin.getProfileName(), is("games647"));
+        assertThat(skin.getTextures().get(TextureType.SKIN).isSlim(), is(false));
+        assertThat(skin.getTextures().containsKey(TextureType.CAPE), is(false));
+        assertThat(VerifyUtil.isValid(skin.getEncodedValue(), skin.getSignature()), is(true));
+    }
+
+    @Test
+    public void testCape() {
+        SkinModel skin = SkinModelParser.parseTextures(SkinModelTest.CAPE_VALUE, SkinModelTest.CAPE_SIGNATURE);
+
+        assertThat(skin.getProfileName(), is("Dinnerbone"));
+        assertThat(skin.getTextures().get(TextureType.CAPE).getShortUrl(),
+                is("eec3cabfaeed5dafe61c6546297e853a547c39ec238d7c44bf4eb4a49dc1f2c0"));
+    }
+
+    @Test
+    public void testUnknownFields() {
+        String json = "{\"timestamp\":1,\"profileId\":\"0aaa2c13922a411bb6559b8c08404695\",\"profileName\":\"a\"," +
+                "\"new\":{\"nested\":[1,2]},\"textures\":{\"UNKNOWN\":{\"url\":\"x\"}," +
+                "\"SKIN\":{\"url\":\"http://textures.minecraft.net/texture/abc\",\"metadata\":{\"model\":\"slim\"," +
+                "\"other\":true},\"extra\":1}}}";
+        String encoded = Base64.getEncoder().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+
+        SkinModel skin = SkinModelParser.parseTextures(encoded, "");
+        assertThat(skin.getTextures().size(), is(1));
+        assertThat(skin.getTextures().get(TextureType.SKIN).getShortUrl(), is("abc"));
+        assertThat(skin.getTextures().get(TextureType.SKIN).isSlim(), is(true));
+    }
+
+    @Test
+    public void testNoProperties() {
+        Reader reader = new StringReader("{\"id\":\"0aaa2c13922a411bb6559b8c08404695\",\"name\":\"a\"," +
+                "\"properties\":[]}");
+        assertThat(SkinModelParser.parseProfile(reader).isPresent(), is(false));
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void testMalformed() {
+        SkinModelParser.parseProfile(new StringReader("{\"properties\":[{\"value\":"));
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void testMissingSignature() {
+        String json = "{\"timestamp\":1,\"profileId\":\"0aaa2c13922a411bb6559b8c08404695\",\"textures\":{}}";
+        String encoded = Base64.getEncoder().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+        SkinModelParser.parseProfile(new StringReader("{\"properties\":[{\"name\":\"textures\",\"value\":\""
+                + encoded + "\"}]}"));
+    }
+
+    private Optional<SkinModel> loadFile(String file) throws Exception {
+        try (Reader reader = new InputStreamReader(getClass().getResourceAsStream(file), StandardCharsets.UTF_8)) {
+            return SkinModelParser.parseProfile(reader);
+        }
+    }
+}
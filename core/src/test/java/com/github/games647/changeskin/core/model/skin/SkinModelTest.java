@@ -8,7 +8,7 @@ import java.util.Map;
 import org.junit.Test;
 
 import static org.hamcrest.CoreMatchers.is;
-import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.MatcherAssert.assertThat;
 
 public class SkinModelTest {
@@ -71,8 +71,6 @@ public class SkinModelTest {
         assertThat(skin.getProfileId(), is(UUIDTypeAdapter.parseId("78c3a4e837e448189df8f9ce61c5efcc")));
         assertThat(skin.getProfileName(), is("Rashomon_"));
 
-        assertThat(skin.getSaveLock(), notNullValue());
-
         Map<TextureType, TextureModel> textures = skin.getTextures();
         TextureModel skinTexture = textures.get(TextureType.SKIN);
         assertThat(skinTexture.getUrl(), is("http://textures.minecraft.net/texture/173567ea72ad4a22bf70bcba5fed3" +
@@ -88,8 +86,6 @@ public class SkinModelTest {
         assertThat(skin.getProfileId(), is(UUIDTypeAdapter.parseId("0aaa2c13922a411bb6559b8c08404695")));
         assertThat(skin.getProfileName(), is("games647"));
 
-        assertThat(skin.getSaveLock(), notNullValue());
-
         Map<TextureType, TextureModel> textures = skin.getTextures();
         TextureModel skinTexture = textures.get(TextureType.SKIN);
         assertThat(skinTexture.getUrl(), is("http://textures.minecraft.net/texture/a2e6a3f8caea7913ab48237beea6d" +
@@ -134,4 +130,55 @@ public class SkinModelTest {
 
         assertThat(VerifyUtil.isValid(capeModel.getEncodedValue(), capeModel.getSignature()), is(true));
     }
+
+    @Test
+    public void testStoredEncodedValue() throws Exception {
+        SkinModel steveModel = new SkinModel(1, 1517052435668L,
+                UUIDTypeAdapter.parseId("0aaa2c13922a411bb6559b8c08404695"),
+                "games647", false, "a2e6a3f8caea7913ab48237beea6d6a1a6f76936e3b71af4c7a08bb61c7870",
+                "", Base64.getDecoder().decode(STEVE_SIGNATURE), STEVE_VALUE);
+
+        assertThat(steveModel.getEncodedValue(), sameInstance(STEVE_VALUE));
+        assertThat(steveModel.getSignature(), is(STEVE_SIGNATURE));
+    }
+
+    @Test
+    public void testRowId() throws Exception {
+        SkinModel skin = SkinModel.createSkinFromEncoded(STEVE_VALUE, STEVE_SIGNATURE);
+        assertThat(skin.isSaved(), is(false));
+
+        skin.setRowId(5);
+        assertThat(skin.isSaved(), is(true));
+
+        //a rollback doesn't reset a row id that was changed in the meanwhile
+        assertThat(skin.compareAndSetRowId(4, -1), is(false));
+        assertThat(skin.compareAndSetRowId(5, -1), is(true));
+        assertThat(skin.getRowId(), is(-1));
+    }
+
+    @Test
+    public void testSharedTextures() throws Exception {
+        SkinModel downloaded = SkinModel.createSkinFromEncoded(SLIM_VALUE, SLIM_SIGNATURE);
+        TextureModel texture = downloaded.getTextures().get(TextureType.SKIN);
+
+        SkinModel stored = new SkinModel(1, 0, downloaded.getProfileId(), "Name", true, texture.getShortUrl(),
+                "", new byte[0]);
+        assertThat(stored.getTextures().get(TextureType.SKIN), sameInstance(texture));
+        assertThat(texture.getShortUrl(), is("173567ea72ad4a22bf70bcba5fed3b8b9ea024639131bdd863c25d22f89"));
+        assertThat(texture.getUrl(), is("http://textures.minecraft.net/texture/" + texture.getShortUrl()));
+    }
+
+    @Test
+    public void testTextureHash() throws Exception {
+        SkinModel downloaded = SkinModel.createSkinFromEncoded(SLIM_VALUE, SLIM_SIGNATURE);
+        TextureModel texture = downloaded.getTextures().get(TextureType.SKIN);
+
+        SkinModel stored = new SkinModel(1, 0, downloaded.getProfileId(), "Name", true, texture.getShortUrl(),
+                "", new byte[0]);
+        assertThat(stored.getTextureHash(), is(downloaded.getTextureHash()));
+
+        SkinModel classic = new SkinModel(2, 0, downloaded.getProfileId(), "Name", false, texture.getShortUrl(),
+                "", new byte[0]);
+        assertThat(classic.getTextureHash().equals(downloaded.getTextureHash()), is(false));
+    }
 }
@@ -3,6 +3,7 @@ package com.github.games647.changeskin.sponge;
 import com.github.games647.changeskin.core.ChangeSkinCore;
 import com.github.games647.changeskin.core.PlatformPlugin;
 import com.github.games647.changeskin.core.message.NamespaceKey;
+import com.github.games647.changeskin.core.model.skin.SkinModel;
 import com.github.games647.changeskin.sponge.bungee.CheckPermissionListener;
 import com.github.games647.changeskin.sponge.bungee.UpdateSkinListener;
 import com.github.games647.changeskin.sponge.command.InfoCommand;
@@ -10,11 +11,13 @@ import com.github.games647.changeskin.sponge.command.InvalidateCommand;
 import com.github.games647.changeskin.sponge.command.SelectCommand;
 import com.github.games647.changeskin.sponge.command.SetCommand;
 import com.github.games647.changeskin.sponge.command.UploadCommand;
+import com.github.games647.changeskin.sponge.task.SkinApplier;
 import com.google.inject.Inject;
 import com.google.inject.Injector;
 import com.google.inject.Singleton;
 
 import java.nio.file.Path;
+import java.util.Collection;
 import java.util.UUID;
 
 import org.slf4j.Logger;
@@ -23,6 +26,7 @@ import org.spongepowered.api.Sponge;
 import org.spongepowered.api.command.CommandManager;
 import org.spongepowered.api.command.CommandSource;
 import org.spongepowered.api.config.ConfigDir;
+import org.spongepowered.api.entity.living.player.Player;
 import org.spongepowered.api.event.Listener;
 import org.spongepowered.api.event.game.state.GameInitializationEvent;
 import org.spongepowered.api.event.game.state.GamePreInitializationEvent;
@@ -30,11 +34,13 @@ import org.spongepowered.api.event.game.state.GameStoppingServerEvent;
 import org.spongepowered.api.network.ChannelBinding.RawDataChannel;
 import org.spongepowered.api.network.ChannelRegistrar;
 import org.spongepowered.api.plugin.Plugin;
+import org.spongepowered.api.scheduler.Task;
 import org.spongepowered.api.text.serializer.TextSerializers;
 
 import static com.github.games647.changeskin.core.message.CheckPermMessage.CHECK_PERM_CHANNEL;
 import static com.github.games647.changeskin.core.message.SkinUpdateMessage.UPDATE_SKIN_CHANNEL;
 import static com.github.games647.changeskin.sponge.PomData.ARTIFACT_ID;
+import static java.util.stream.Collectors.toList;
 
 @Singleton
 @Plugin(id = ARTIFACT_ID, name = PomData.NAME, version = PomData.VERSION,
@@ -119,6 +125,18 @@ public class ChangeSkinSponge implements PlatformPlugin<CommandSource> {
         return false;
     }
 
+    @Override
+    public Collection<UUID> getOnlinePlayers() {
+        return Sponge.getServer().getOnlinePlayers().stream().map(Player::getUniqueId).collect(toList());
+    }
+
+    @Override
+    public void applySkin(UUID playerId, SkinModel targetSkin) {
+        Task.builder().execute(() -> Sponge.getServer().getPlayer(playerId)
+                .ifPresent(player -> new SkinApplier(this, null, player, targetSkin, false).run()))
+                .submit(this);
+    }
+
     public SpongeSkinAPI getApi() {
         return api;
     }
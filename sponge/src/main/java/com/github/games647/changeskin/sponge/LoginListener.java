@@ -8,11 +8,11 @@ import com.google.inject.Inject;
 
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 import org.spongepowered.api.event.Listener;
 import org.spongepowered.api.event.network.ClientConnectionEvent;
 import org.spongepowered.api.profile.GameProfile;
-import org.spongepowered.api.scheduler.Task;
 
 public class LoginListener extends SharedListener {
 
@@ -30,7 +30,10 @@ public class LoginListener extends SharedListener {
         SkinStorage storage = core.getStorage();
         GameProfile profile = preLoginEvent.getProfile();
         UUID playerUUID = profile.getUniqueId();
+        String playerName = profile.getName().get();
 
+        long deadline = getLoginDeadline();
+        CompletableFuture<Optional<UUID>> owner = prefetchOwner(playerUUID, playerName);
         UserPreference preferences = storage.getPreferences(playerUUID);
         Optional<SkinModel> optSkin = preferences.getTargetSkin();
         if (optSkin.isPresent()) {
@@ -41,36 +44,14 @@ public class LoginListener extends SharedListener {
 
             plugin.getApi().applyProperties(profile, targetSkin);
             save(preferences);
-        } else {
-            String playerName = profile.getName().get();
-            if (!core.getConfig().getBoolean("restoreSkins") || !refetchSkin(playerName, preferences)) {
-                setDefaultSkin(preferences, profile);
-            }
-        }
-    }
-
-    private void setDefaultSkin(UserPreference preferences, GameProfile profile) {
-        Optional<SkinModel> randomSkin = getRandomSkin();
-        if (randomSkin.isPresent()) {
-            SkinModel targetSkin = randomSkin.get();
-            preferences.setTargetSkin(targetSkin);
-            plugin.getApi().applyProperties(profile, targetSkin);
+        } else if (!refetchSkin(playerName, owner, deadline, preferences)) {
+            //restoreSkins is disabled, there is no premium skin for this name or Mojang is too slow
+            setDefaultSkin(profile);
         }
     }
 
-    @Override
-    protected void save(final UserPreference preferences) {
-        Task.builder()
-                .async()
-                .execute(() -> {
-                    Optional<SkinModel> optSkin = preferences.getTargetSkin();
-                    if (optSkin.isPresent()) {
-                        if (core.getStorage().save(optSkin.get())) {
-                            core.getStorage().save(preferences);
-                        }
-                    } else {
-                        core.getStorage().save(preferences);
-                    }
-                }).submit(plugin);
+    private void setDefaultSkin(GameProfile profile) {
+        //only applied to this login - the cached preferences stay empty, so a later login could restore the skin
+        getRandomSkin().ifPresent(skin -> plugin.getApi().applyProperties(profile, skin));
     }
 }
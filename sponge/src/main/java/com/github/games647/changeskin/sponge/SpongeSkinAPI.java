@@ -1,5 +1,6 @@
 package com.github.games647.changeskin.sponge;
 
+import com.github.games647.changeskin.core.RateLimitException;
 import com.github.games647.changeskin.core.model.skin.SkinModel;
 import com.github.games647.changeskin.core.model.skin.SkinProperty;
 import com.github.games647.changeskin.core.shared.ChangeSkinAPI;
@@ -49,9 +50,15 @@ public class SpongeSkinAPI implements ChangeSkinAPI<Player, GameProfile> {
     public void setPersistentSkin(Player player, UUID targetSkinId, boolean applyNow) {
         SkinModel newSkin = plugin.getCore().getStorage().getSkin(targetSkinId);
         if (newSkin == null) {
-            Optional<SkinModel> downloadSkin = plugin.getCore().getSkinApi().downloadSkin(targetSkinId);
-            if (downloadSkin.isPresent()) {
-                newSkin = downloadSkin.get();
+            try {
+                Optional<SkinModel> downloadSkin = plugin.getCore().getSkinApi().downloadSkin(targetSkinId);
+                if (downloadSkin.isPresent()) {
+                    newSkin = downloadSkin.get();
+                }
+            } catch (RateLimitException rateLimitEx) {
+                //don't reset the skin only because Mojang couldn't be asked
+                plugin.getLog().warn("Failed to set skin {} of {}", targetSkinId, player, rateLimitEx);
+                return;
             }
         }
 
@@ -1,15 +1,14 @@
 package com.github.games647.changeskin.sponge.bungee;
 
+import com.github.games647.changeskin.core.message.ChannelProtocol;
 import com.github.games647.changeskin.core.message.NamespaceKey;
 import com.github.games647.changeskin.core.message.CheckPermMessage;
 import com.github.games647.changeskin.core.message.PermResultMessage;
-import com.github.games647.changeskin.core.model.skin.SkinModel;
+import com.github.games647.changeskin.core.message.SkinReference;
 import com.github.games647.changeskin.sponge.ChangeSkinSponge;
-import com.google.common.io.ByteArrayDataInput;
-import com.google.common.io.ByteArrayDataOutput;
-import com.google.common.io.ByteStreams;
 import com.google.inject.Inject;
 
+import java.util.Collections;
 import java.util.UUID;
 
 import org.spongepowered.api.Platform.Type;
@@ -20,6 +19,7 @@ import org.spongepowered.api.network.ChannelRegistrar;
 import org.spongepowered.api.network.RawDataListener;
 import org.spongepowered.api.network.RemoteConnection;
 
+import static com.github.games647.changeskin.core.message.CheckPermMessage.TYPE_ID;
 import static com.github.games647.changeskin.core.message.PermResultMessage.PERMISSION_RESULT_CHANNEL;
 import static com.github.games647.changeskin.sponge.PomData.ARTIFACT_ID;
 
@@ -38,21 +38,17 @@ public class CheckPermissionListener implements RawDataListener {
 
     @Override
     public void handlePayload(ChannelBuf data, RemoteConnection connection, Type side) {
-
-        ByteArrayDataInput dataInput = ByteStreams.newDataInput(data.array());
-        CheckPermMessage checkMessage = new CheckPermMessage();
-        checkMessage.readFrom(dataInput);
-
-        CheckPermMessage message = new CheckPermMessage();
-        message.readFrom(dataInput);
-
-        checkPermissions((Player) connection, message);
+        //malformed frames are empty
+        for (CheckPermMessage message : ChannelProtocol.decode(data.array(), TYPE_ID, CheckPermMessage::new)) {
+            checkPermissions((Player) connection, message);
+        }
     }
 
     private void checkPermissions(Player player, CheckPermMessage permMessage) {
         UUID receiverUUID = permMessage.getReceiverUUD();
         boolean op = permMessage.isOp();
-        SkinModel targetSkin = permMessage.getTargetSkin();
+        //only the profile is needed here, so the skin is sent back without decoding it
+        SkinReference targetSkin = permMessage.getTargetSkin();
         UUID skinProfile = targetSkin.getProfileId();
 
         boolean success = op || checkBungeePerms(player, receiverUUID, permMessage.isSkinPerm(), skinProfile);
@@ -78,8 +74,8 @@ public class CheckPermissionListener implements RawDataListener {
     }
 
     private void sendResultMessage(Player receiver, PermResultMessage resultMessage) {
-        ByteArrayDataOutput dataOutput = ByteStreams.newDataOutput();
-        resultMessage.writeTo(dataOutput);
-        permissionsResultChannel.sendTo(receiver, buf -> buf.writeByteArray(dataOutput.toByteArray()));
+        for (byte[] frame : ChannelProtocol.encode(Collections.singletonList(resultMessage))) {
+            permissionsResultChannel.sendTo(receiver, buf -> buf.writeByteArray(frame));
+        }
     }
 }
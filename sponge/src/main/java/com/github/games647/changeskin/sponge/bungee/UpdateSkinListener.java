@@ -1,10 +1,9 @@
 package com.github.games647.changeskin.sponge.bungee;
 
+import com.github.games647.changeskin.core.message.ChannelProtocol;
 import com.github.games647.changeskin.core.message.SkinUpdateMessage;
 import com.github.games647.changeskin.sponge.ChangeSkinSponge;
 import com.github.games647.changeskin.sponge.task.SkinApplier;
-import com.google.common.io.ByteArrayDataInput;
-import com.google.common.io.ByteStreams;
 import com.google.inject.Inject;
 
 import java.util.Optional;
@@ -18,6 +17,8 @@ import org.spongepowered.api.network.RawDataListener;
 import org.spongepowered.api.network.RemoteConnection;
 import org.spongepowered.api.scheduler.Task;
 
+import static com.github.games647.changeskin.core.message.SkinUpdateMessage.TYPE_ID;
+
 public class UpdateSkinListener implements RawDataListener {
 
     @Inject
@@ -25,15 +26,14 @@ public class UpdateSkinListener implements RawDataListener {
 
     @Override
     public void handlePayload(ChannelBuf data, RemoteConnection connection, Type side) {
-        ByteArrayDataInput dataInput = ByteStreams.newDataInput(data.array());
-        SkinUpdateMessage updateMessage = new SkinUpdateMessage();
-        updateMessage.readFrom(dataInput);
-
-        String playerName = updateMessage.getPlayerName();
-        Optional<Player> receiver = Sponge.getServer().getPlayer(playerName);
-        if (receiver.isPresent()) {
-            Runnable skinUpdater = new SkinApplier(plugin, (CommandSource) connection, receiver.get(), null, false);
-            Task.builder().execute(skinUpdater).submit(plugin);
+        //malformed frames are empty
+        for (SkinUpdateMessage updateMessage : ChannelProtocol.decode(data.array(), TYPE_ID, SkinUpdateMessage::new)) {
+            String playerName = updateMessage.getPlayerName();
+            Optional<Player> receiver = Sponge.getServer().getPlayer(playerName);
+            if (receiver.isPresent()) {
+                Runnable skinUpdater = new SkinApplier(plugin, (CommandSource) connection, receiver.get(), null, false);
+                Task.builder().execute(skinUpdater).submit(plugin);
+            }
         }
     }
 }
@@ -13,7 +13,6 @@ import org.spongepowered.api.command.CommandSource;
 import org.spongepowered.api.data.key.Keys;
 import org.spongepowered.api.entity.living.player.Player;
 import org.spongepowered.api.entity.living.player.tab.TabListEntry;
-import org.spongepowered.api.scheduler.Task;
 import org.spongepowered.api.world.Location;
 import org.spongepowered.api.world.World;
 
@@ -70,13 +69,6 @@ public class SkinApplier extends SharedApplier {
         plugin.sendMessage(invoker, key);
     }
 
-    @Override
-    protected void runAsync(Runnable runnable) {
-        Task.builder().async()
-                .execute(runnable)
-                .submit(plugin);
-    }
-
     private void sendUpdate() {
         sendUpdateSelf();
 